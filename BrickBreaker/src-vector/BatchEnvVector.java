@@ -0,0 +1,164 @@
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.GE;
+import static jdk.incubator.vector.VectorOperators.GT;
+import static jdk.incubator.vector.VectorOperators.LE;
+import static jdk.incubator.vector.VectorOperators.LT;
+
+/**
+ * The phases of a BatchEnv step done with the jdk.incubator.vector API.
+ *  Bats, walls and moves work on a vector of games at once, one game
+ *  per lane. The bat and the bricks are tested against a vector of
+ *  balls or bricks at once, and the few that overlap are bounced by
+ *  BatchEnv, game by game, just as the plain kernel does.
+ * Every sum is done in the same order as the plain kernel, with no
+ *  fused multiply add, so both give the same results to the bit.
+ * Kept apart from src as it needs Java 16 or later, compile with
+ *    javac --release 17 --add-modules jdk.incubator.vector -cp classes -d classes src-vector/*.java
+ *  and run with --add-modules jdk.incubator.vector.
+ *  BatchEnv loads it by name, see BatchEnv(games, level, true).
+ */
+final class BatchEnvVector extends BatchEnv.Kernel
+{
+  private static final VectorSpecies<Float>   F = FloatVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Integer> I = IntVector.SPECIES_PREFERRED;  // Same lanes as F
+
+  BatchEnvVector( BatchEnv env )  { super( env ); }
+
+  @Override
+  void bats( int[] actions, int from, int to )
+  {
+    final BatchEnv e = env;
+    final float lo = Model.B, hi = e.w - Model.B;
+    int end = from + F.loopBound( to - from );
+    for ( int i = from; i < end; i += F.length() )
+    {
+      IntVector   act  = IntVector.fromArray( I, actions, i );
+      FloatVector sign = FloatVector.zero( F ).blend( 1, act.compare( GT, 0 ).cast( F ) )
+                                              .blend( -1, act.compare( LT, 0 ).cast( F ) );
+      FloatVector batX = FloatVector.fromArray( F, e.batX, i );
+      FloatVector at   = batX.add( sign.mul( FloatVector.fromArray( F, e.batMove, i ) ) );
+      FloatVector high = FloatVector.broadcast( F, hi ).sub( FloatVector.fromArray( F, e.batW, i ) );
+      batX.blend( at, at.compare( GT, lo ).and( at.compare( LT, high ) ) ).intoArray( e.batX, i );
+    }
+    super.bats( actions, end, to );
+  }
+
+  @Override
+  void walls( int from, int to )
+  {
+    final BatchEnv e = env;
+    final float lo = Model.B, hiX = e.w - Model.B - Model.BALL_SIZE;
+    final float hiY = e.h - Model.B - Model.BALL_SIZE, top = Model.M;
+    final FloatVector none = FloatVector.zero( F );
+    int end = from + F.loopBound( to - from );
+    for ( int i = from; i < end; i += F.length() )
+    {
+      FloatVector x  = FloatVector.fromArray( F, e.x, i );
+      FloatVector y  = FloatVector.fromArray( F, e.y, i );
+      FloatVector dx = FloatVector.fromArray( F, e.dx, i );
+      FloatVector dy = FloatVector.fromArray( F, e.dy, i );
+      VectorMask<Float> side   = x.compare( GE, hiX ).or( x.compare( LE, lo ) );
+      VectorMask<Float> bottom = y.compare( GE, hiY );
+      dx.blend( dx.neg(), side.eq( bottom ).not() ).intoArray( e.dx, i );
+      dy.blend( dy.neg(), bottom.or( y.compare( LE, top ) ) ).intoArray( e.dy, i );
+      y.blend( e.h/2, bottom ).intoArray( e.y, i );
+      none.blend( Model.HIT_BOTTOM, bottom ).intoArray( e.reward, i );
+      IntVector.fromArray( I, e.lives, i ).sub( 1, bottom.cast( I ) ).intoArray( e.lives, i );
+    }
+    super.walls( end, to );
+  }
+
+  @Override
+  void batBounce( int from, int to )
+  {
+    final BatchEnv e = env;
+    final float size = Model.BALL_SIZE;
+    int end = from + F.loopBound( to - from );
+    for ( int i = from; i < end; i += F.length() )
+    {
+      FloatVector x    = FloatVector.fromArray( F, e.x, i );
+      FloatVector y    = FloatVector.fromArray( F, e.y, i );
+      FloatVector batX = FloatVector.fromArray( F, e.batX, i );
+      FloatVector batW = FloatVector.fromArray( F, e.batW, i );
+      FloatVector overlapX = x.add( size ).min( batX.add( batW ) ).sub( x.max( batX ) );
+      FloatVector overlapY = y.add( size ).min( e.batY + e.batH ).sub( y.max( e.batY ) );
+      long hit = overlapX.compare( GT, 0 ).and( overlapY.compare( GT, 0 ) ).toLong();
+      for ( ; hit != 0; hit &= hit - 1 )
+      {
+        int k = i + Long.numberOfTrailingZeros( hit );
+        e.bounce( k, e.batX[k], e.batY, e.batW[k], e.batH );
+      }
+    }
+    super.batBounce( end, to );
+  }
+
+  @Override
+  void bricks( int from, int to )
+  {
+    final BatchEnv e = env;
+    for ( int i = from; i < to; i++ )
+      if ( e.y[i] + Model.BALL_SIZE > e.bandTop && e.y[i] < e.bandBottom ) bricksOf( i );
+  }
+
+  /**
+   * Bounce one ball off the bricks it hits, in brick order. A vector
+   *  of bricks is tested at once, and after a hit the search starts
+   *  again from the next brick, as the ball has been moved
+   * @param i The game
+   */
+  private void bricksOf( int i )
+  {
+    final BatchEnv e = env;
+    final float size = Model.BALL_SIZE;
+    final int   n = e.nBricks, base = i * n;
+    int j = 0;
+    search:
+    while ( j < n )
+    {
+      float bx = e.x[i], by = e.y[i];
+      for ( ; j < n; j += F.length() )
+      {
+        VectorMask<Float> in = F.indexInRange( j, n );
+        FloatVector ox = FloatVector.fromArray( F, e.bx, j, in );
+        FloatVector oy = FloatVector.fromArray( F, e.by, j, in );
+        FloatVector ow = FloatVector.fromArray( F, e.bw, j, in );
+        FloatVector oh = FloatVector.fromArray( F, e.bh, j, in );
+        FloatVector overlapX = ox.add( ow ).min( bx + size ).sub( ox.max( bx ) );
+        FloatVector overlapY = oy.add( oh ).min( by + size ).sub( oy.max( by ) );
+        long hit = overlapX.compare( GT, 0 ).and( overlapY.compare( GT, 0 ) ).and( in ).toLong();
+        for ( ; hit != 0; hit &= hit - 1 )
+        {
+          int b = j + Long.numberOfTrailingZeros( hit );
+          if ( e.hits[base + b] == BatchEnv.GONE ) continue;
+          if ( e.bounce( i, e.bx[b], e.by[b], e.bw[b], e.bh[b] ) ) e.hitBrick( i, b );
+          j = b + 1;
+          continue search;
+        }
+      }
+    }
+  }
+
+  @Override
+  void move( int from, int to )
+  {
+    final BatchEnv e = env;
+    final FloatVector none = FloatVector.zero( F );
+    int end = from + F.loopBound( to - from );
+    for ( int i = from; i < end; i += F.length() )
+    {
+      FloatVector speed = FloatVector.fromArray( F, e.speed, i );
+      FloatVector.fromArray( F, e.x, i ).add( speed.mul( FloatVector.fromArray( F, e.dx, i ) ) )
+                 .intoArray( e.x, i );
+      FloatVector.fromArray( F, e.y, i ).sub( speed.mul( FloatVector.fromArray( F, e.dy, i ) ) )
+                 .intoArray( e.y, i );
+      VectorMask<Float> falling = IntVector.fromArray( I, e.dropKind, i ).compare( GE, 0 ).cast( F );
+      FloatVector.fromArray( F, e.dropY, i ).add( none.blend( PowerUp.FALL, falling ) )
+                 .intoArray( e.dropY, i );
+    }
+    super.move( end, to );
+  }
+}
@@ -0,0 +1,92 @@
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.BufferedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Build step, packs every image and sound into one archive
+ *    java AssetPacker assets assets.pak
+ * Put the archive next to the classes or jar, or in the jar itself.
+ * Archive layout (big endian), data for each entry starts on an
+ *  8 byte boundary
+ *   int   MAGIC, int VERSION, int number of entries
+ *   for each entry
+ *     short length of name, name in UTF-8
+ *     int   offset of data from start of archive
+ *     int   length of data
+ *     byte  format, see Assets
+ *     int   width, int height of an image, 0 otherwise
+ *   data
+ */
+public class AssetPacker
+{
+  public static void main( String args[] ) throws IOException
+  {
+    if ( args.length != 2 )
+    {
+      System.out.println( "Usage: java AssetPacker assetsDir archive.pak" );
+      return;
+    }
+    File[] files = new File( args[0] ).listFiles( File::isFile );
+    if ( files == null ) throw new IOException( "Not a directory " + args[0] );
+    Arrays.sort( files );
+
+    byte[][] data   = new byte[files.length][];
+    byte[][] names  = new byte[files.length][];
+    int[]    format = new int[files.length];
+    int[]    width  = new int[files.length];
+    int[]    height = new int[files.length];
+    int headerSize = 12;
+    for ( int i = 0; i < files.length; i++ )
+    {
+      data[i]   = Files.readAllBytes( files[i].toPath() );
+      names[i]  = files[i].getName().getBytes( StandardCharsets.UTF_8 );
+      format[i] = Assets.formatOf( files[i].getName() );
+      if ( format[i] == Assets.PNG )       // Size known without decoding
+      {
+        BufferedImage image = ImageIO.read( new ByteArrayInputStream( data[i] ) );
+        if ( image == null ) throw new IOException( "Cannot decode image " + files[i] );
+        width[i] = image.getWidth(); height[i] = image.getHeight();
+      }
+      headerSize += 2 + names[i].length + 4 + 4 + 1 + 4 + 4;
+    }
+
+    try ( DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream( new FileOutputStream( args[1] ) ) ) )
+    {
+      out.writeInt( Assets.MAGIC );
+      out.writeInt( Assets.VERSION );
+      out.writeInt( files.length );
+      int offset = align( headerSize );
+      for ( int i = 0; i < files.length; i++ )
+      {
+        out.writeShort( names[i].length );
+        out.write( names[i] );
+        out.writeInt( offset );
+        out.writeInt( data[i].length );
+        out.writeByte( format[i] );
+        out.writeInt( width[i] );
+        out.writeInt( height[i] );
+        offset = align( offset + data[i].length );
+      }
+      int pos = headerSize;
+      for ( int i = 0; i < files.length; i++ )
+      {
+        for ( ; pos < align( pos ); pos++ ) out.writeByte( 0 );
+        out.write( data[i] );
+        pos += data[i].length;
+        System.out.printf( "%-24s %8d bytes %4d x %d%n", files[i].getName(),
+                           data[i].length, width[i], height[i] );
+      }
+    }
+  }
+
+  private static int align( int n )  { return (n + 7) & ~7; }
+}
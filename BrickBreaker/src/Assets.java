@@ -0,0 +1,328 @@
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the game's images and sounds, wherever the game is run from.
+ *  Looks for the archive made by AssetPacker in this order
+ *    the file named by -Dbrickbreaker.assets
+ *    assets.pak next to the classes or jar, memory mapped
+ *    assets.pak on the classpath (in the jar), read once
+ *  If there is no archive, the loose files are read from the
+ *  classpath or the assets folder instead. The assets folder is
+ *  looked for next to the classes or jar, then in the folder above,
+ *  then in the working directory.
+ * Entries are decoded straight from the archive's buffer.
+ */
+public final class Assets
+{
+  public static final int MAGIC   = 0x42425041;  // "BBPA"
+  public static final int VERSION = 1;
+
+  public static final int OTHER = 0;              // Entry formats
+  public static final int PNG   = 1;
+  public static final int WAV   = 2;
+
+  private static final String ARCHIVE = "assets.pak";
+  private static final String FOLDER  = "assets";
+  private static File folder;                     // Loose files, found on first use
+
+  /**
+   * Where an entry is in the archive
+   */
+  private static final class Entry
+  {
+    final int offset, length, format, width, height;
+
+    Entry( int offset, int length, int format, int width, int height )
+    {
+      this.offset = offset; this.length = length; this.format = format;
+      this.width  = width;  this.height = height;
+    }
+  }
+
+  private static ByteBuffer archive = null;        // Whole archive
+  private static final Map<String,Entry> index = new HashMap<>();
+  private static boolean loaded = false;
+  private static final Map<String,BufferedImage> decoded = new ConcurrentHashMap<>(); // By prefetch()
+
+  private Assets() {}
+
+  /**
+   * Format of an asset from its file name
+   * @param name The file name
+   * @return PNG, WAV or OTHER
+   */
+  public static int formatOf( String name )
+  {
+    String n = name.toLowerCase();
+    return n.endsWith(".png") ? PNG : n.endsWith(".wav") ? WAV : OTHER;
+  }
+
+  /**
+   * The bytes of an asset, as a read only buffer
+   * @param name File name of the asset, such as "ball.png"
+   * @return The bytes or null if there is no such asset
+   */
+  public static synchronized ByteBuffer get( String name )
+  {
+    load();
+    Entry e = index.get( name );
+    if ( e != null )
+    {
+      ByteBuffer b = archive.duplicate();
+      b.limit( e.offset + e.length ).position( e.offset );
+      return b.slice();
+    }
+    byte[] loose = loose( name );
+    return loose == null ? null : ByteBuffer.wrap( loose ).asReadOnlyBuffer();
+  }
+
+  /**
+   * Decode an image asset
+   * @param name File name of the asset
+   * @return The image or null if it cannot be found or decoded
+   */
+  public static BufferedImage image( String name )
+  {
+    BufferedImage ready = decoded.remove( name );
+    if ( ready != null ) return ready;
+    ByteBuffer b = get( name );
+    if ( b == null ) { System.out.println("Cannot find " + name); return null; }
+    try {
+      return ImageIO.read( new BufferInputStream( b ) );
+    } catch (IOException e) {
+      System.out.println("Cannot decode " + name);
+      return null;
+    }
+  }
+
+  /**
+   * Decode an image now, in this thread, so a later call to image()
+   *  does not have to. Does nothing if there is no such asset
+   * @param name File name of the asset
+   */
+  public static void prefetch( String name )
+  {
+    if ( decoded.containsKey( name ) || get( name ) == null ) return;
+    BufferedImage image = image( name );
+    if ( image != null ) decoded.put( name, image );
+  }
+
+  /**
+   * Drop an image decoded by prefetch() that nothing has asked for,
+   *  so it does not stay in memory once it is no longer going to be shown
+   * @param name File name of the asset
+   */
+  public static void evict( String name )
+  {
+    decoded.remove( name );
+  }
+
+  /**
+   * A stream of an asset, for example a sound, supports mark/reset
+   * @param name File name of the asset
+   * @return The stream or null if it cannot be found
+   */
+  public static InputStream stream( String name )
+  {
+    ByteBuffer b = get( name );
+    return b == null ? null : new BufferInputStream( b );
+  }
+
+  /**
+   * Find and index the archive, the first time only
+   */
+  private static void load()
+  {
+    if ( loaded ) return;
+    loaded = true;
+    try
+    {
+      archive = mapArchive();
+      if ( archive == null ) archive = readArchiveResource();
+      if ( archive != null ) readIndex();
+    } catch (IOException | RuntimeException e)
+    {
+      Debug.error("Assets - Bad archive, using loose files\n%s", e.getMessage() );
+      archive = null;
+      index.clear();
+    }
+    Debug.trace( "Assets: %d entries in archive", index.size() );
+  }
+
+  /**
+   * Memory map the archive file, if there is one
+   */
+  private static ByteBuffer mapArchive() throws IOException
+  {
+    Path path = null;
+    String named = System.getProperty( "brickbreaker.assets" );
+    if ( named != null ) path = Paths.get( named );
+    else
+    {
+      Path home = codeHome();
+      if ( home != null && Files.isRegularFile( home.resolve( ARCHIVE ) ) )
+        path = home.resolve( ARCHIVE );
+    }
+    if ( path == null ) return null;
+    try ( FileChannel ch = FileChannel.open( path, StandardOpenOption.READ ) )
+    {
+      return ch.map( FileChannel.MapMode.READ_ONLY, 0, ch.size() );  // Stays mapped after close
+    }
+  }
+
+  /**
+   * Directory holding the classes, or holding the jar
+   */
+  private static Path codeHome()
+  {
+    try
+    {
+      Path p = Paths.get( Assets.class.getProtectionDomain().getCodeSource().getLocation().toURI() );
+      return Files.isDirectory( p ) ? p : p.getParent();
+    } catch (Exception e)
+    {
+      return null;
+    }
+  }
+
+  /**
+   * The folder of loose asset files, next to the classes or jar, or
+   *  in the folder above (bin and assets side by side), or else in
+   *  the working directory
+   */
+  private static synchronized File looseFolder()
+  {
+    if ( folder == null )
+    {
+      Path home = codeHome();
+      Path[] places = { home, home == null ? null : home.getParent() };
+      folder = new File( FOLDER );
+      for ( Path p : places )
+      {
+        if ( p != null && Files.isDirectory( p.resolve( FOLDER ) ) )
+          { folder = p.resolve( FOLDER ).toFile(); break; }
+      }
+      Debug.trace( "Assets: loose files from %s", folder.getAbsolutePath() );
+    }
+    return folder;
+  }
+
+  /**
+   * Read the archive from the classpath, when it is inside the jar
+   */
+  private static ByteBuffer readArchiveResource() throws IOException
+  {
+    try ( InputStream in = Assets.class.getResourceAsStream( "/" + ARCHIVE ) )
+    {
+      if ( in == null ) return null;
+      byte[] buf = new byte[64 * 1024];
+      ByteBuffer b = ByteBuffer.allocateDirect( Math.max( buf.length, in.available() ) );
+      for ( int n; (n = in.read( buf )) > 0; )
+      {
+        if ( b.remaining() < n )
+        {
+          ByteBuffer bigger = ByteBuffer.allocateDirect( b.capacity() * 2 + n );
+          b.flip(); bigger.put( b ); b = bigger;
+        }
+        b.put( buf, 0, n );
+      }
+      b.flip();
+      return b.asReadOnlyBuffer();
+    }
+  }
+
+  private static void readIndex() throws IOException
+  {
+    ByteBuffer b = archive.duplicate();
+    if ( b.getInt() != MAGIC || b.getInt() != VERSION )
+      throw new IOException( "Not a version " + VERSION + " asset archive" );
+    int count = b.getInt();
+    for ( int i = 0; i < count; i++ )
+    {
+      byte[] name = new byte[b.getShort() & 0xFFFF];
+      b.get( name );
+      Entry e = new Entry( b.getInt(), b.getInt(), b.get(), b.getInt(), b.getInt() );
+      if ( e.offset < 0 || (long) e.offset + e.length > archive.capacity() )
+        throw new IOException( "Entry past end of archive" );
+      index.put( new String( name, StandardCharsets.UTF_8 ), e );
+    }
+  }
+
+  /**
+   * Read a loose asset file from the classpath or the assets folder
+   */
+  private static byte[] loose( String name )
+  {
+    try
+    {
+      try ( InputStream in = Assets.class.getResourceAsStream( "/" + name ) )
+      {
+        if ( in != null ) return readAll( in );
+      }
+      File file = new File( looseFolder(), name );
+      return file.isFile() ? Files.readAllBytes( file.toPath() ) : null;
+    } catch (IOException e)
+    {
+      return null;
+    }
+  }
+
+  private static byte[] readAll( InputStream in ) throws IOException
+  {
+    java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+    byte[] buf = new byte[8192];
+    for ( int n; (n = in.read( buf )) > 0; ) out.write( buf, 0, n );
+    return out.toByteArray();
+  }
+
+  /**
+   * Reads a buffer without copying it, supports mark/reset
+   *  as AudioSystem needs
+   */
+  private static final class BufferInputStream extends InputStream
+  {
+    private final ByteBuffer b;
+
+    BufferInputStream( ByteBuffer b ) { this.b = b.duplicate(); }
+
+    @Override public int read()
+    {
+      return b.hasRemaining() ? b.get() & 0xFF : -1;
+    }
+
+    @Override public int read( byte[] dst, int off, int len )
+    {
+      if ( len == 0 ) return 0;
+      if ( !b.hasRemaining() ) return -1;
+      int n = Math.min( len, b.remaining() );
+      b.get( dst, off, n );
+      return n;
+    }
+
+    @Override public long skip( long n )
+    {
+      int k = (int) Math.max( 0, Math.min( n, b.remaining() ) );
+      b.position( b.position() + k );
+      return k;
+    }
+
+    @Override public int available()              { return b.remaining(); }
+    @Override public boolean markSupported()      { return true; }
+    @Override public synchronized void mark( int limit ) { b.mark(); }
+    @Override public synchronized void reset()    { b.reset(); }
+  }
+}
@@ -0,0 +1,107 @@
+import javax.swing.SwingUtilities;
+import java.awt.event.KeyEvent;
+
+/**
+ * Plays the game without a user, for long unattended test runs.
+ *  Moves the bat under where the ball is predicted to land and
+ *  presses ENTER on the start, level complete and game over screens.
+ * Key presses go to the controller on the Swing thread,
+ *  just as they would from the keyboard.
+ */
+public class Autopilot
+{
+  private static final int POLL_MS   = 2;     // How often to look at the game
+  private static final int SCREEN_MS = 1000;  // Time to leave a screen showing
+
+  private final Model      model;
+  private final Controller controller;
+  private volatile boolean running = false;
+  private long screenSince = 0;               // When a screen was first seen
+  private int  lastState   = -1;
+
+  public Autopilot( Model model, Controller controller )
+  {
+    this.model      = model;
+    this.controller = controller;
+  }
+
+  /**
+   * Start driving the game in a separate thread
+   */
+  public void start()
+  {
+    running = true;
+    Thread t = new Thread( this::run, "Autopilot" );
+    t.setDaemon(true);
+    t.start();
+  }
+
+  /**
+   * Stop driving the game
+   */
+  public void stop()
+  {
+    running = false;
+  }
+
+  private void run()
+  {
+    try
+    {
+      while ( running )
+      {
+        int key = decide();
+        if ( key != 0 )
+          SwingUtilities.invokeAndWait( () -> controller.userKeyInteraction( key ) );
+        Thread.sleep( POLL_MS );
+      }
+    } catch (Exception e)
+    {
+      Debug.error("Autopilot.run - Error\n%s", e.getMessage() );
+    }
+  }
+
+  /**
+   * Decide which key to press next
+   * @return The key code as sent by the view, 0 for none
+   */
+  private int decide()
+  {
+    int state = model.getGameState();
+    if ( state != lastState )
+    {
+      lastState   = state;
+      screenSince = System.currentTimeMillis();
+    }
+
+    if ( state != 1 )                       // Start, level complete, game over
+    {
+      if ( System.currentTimeMillis() - screenSince < SCREEN_MS ) return 0;
+      screenSince = System.currentTimeMillis();
+      return -KeyEvent.VK_ENTER;
+    }
+
+    switch ( steer( model ) )
+    {
+      case -1: return -KeyEvent.VK_LEFT;
+      case +1: return -KeyEvent.VK_RIGHT;
+      default: return 0;
+    }
+  }
+
+  /**
+   * Which way to move the bat to be under where the ball will land
+   * @param model The model
+   * @return -1 left, +1 right or 0 to stay
+   */
+  static int steer( Model model )
+  {
+    GameObj bat = model.getBat();
+    if ( bat == null ) return 0;
+    float target = model.predictLandingX();
+    float batMid = bat.getX() + bat.getWidth() / 2;
+    if ( target < batMid - bat.getWidth() / 4 ) return -1;
+    if ( target > batMid + bat.getWidth() / 4 ) return +1;
+    return 0;
+  }
+}
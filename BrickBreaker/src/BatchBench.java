@@ -0,0 +1,67 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures how many game steps a second BatchEnv makes, on each level,
+ *  with the plain kernel and, if it can be loaded, the vector kernel
+ *    java BatchBench [games] [steps] [passes]
+ *    java --add-modules jdk.incubator.vector BatchBench [games] [steps] [passes]
+ *  The second needs BatchEnvVector, compiled from src-vector.
+ * The bat moves are made up before timing starts. The first pass
+ *  warms up the JIT and is not counted. The median, best and worst
+ *  of the timed passes are printed, in millions of game steps (one
+ *  game moved one tick) per second.
+ */
+public class BatchBench
+{
+  private static final int MOVES = 64;        // Sets of bat moves used in turn
+
+  private static volatile float sink;         // So the steps are not optimised away
+
+  public static void main( String args[] )
+  {
+    int games  = args.length > 0 ? Integer.parseInt( args[0] ) : 4096;
+    int steps  = args.length > 1 ? Integer.parseInt( args[1] ) : 2000;
+    int passes = args.length > 2 ? Integer.parseInt( args[2] ) : 5;
+    Debug.set( false );
+
+    int[][] moves = new int[MOVES][games];
+    Random r = new Random( 1 );
+    for ( int[] m : moves )
+      for ( int i = 0; i < games; i++ ) m[i] = r.nextInt( 3 ) - 1;
+
+    boolean vector = new BatchEnv( 1, 1, true ).isVector();
+    System.out.printf( "BatchBench: %d games, %d steps a pass, %d passes, %s%n",
+                       games, steps, passes,
+                       vector ? "vector kernel loaded" : "no vector kernel" );
+    System.out.println( "level  kernel   M steps/s median    best   worst" );
+    for ( int level = 1; level <= Model.LAST_LEVEL; level++ )
+    {
+      measure( level, "plain", new BatchEnv( games, level ), moves, steps, passes );
+      if ( vector )
+        measure( level, "vector", new BatchEnv( games, level, true ), moves, steps, passes );
+    }
+  }
+
+  /**
+   * Time passes of steps of one environment and print the rates
+   */
+  private static void measure( int level, String kernel, BatchEnv env,
+                               int[][] moves, int steps, int passes )
+  {
+    double[] rate = new double[passes];
+    float check = 0;
+    for ( int p = -1; p < passes; p++ )       // -1 is the warm up
+    {
+      long start = System.nanoTime();
+      for ( int t = 0; t < steps; t++ )
+        check += env.step( moves[t % MOVES] )[0];
+      long ns = System.nanoTime() - start;
+      if ( p >= 0 ) rate[p] = (double) env.size() * steps / ns * 1e3;   // Millions a second
+    }
+    sink = check;
+    Arrays.sort( rate );
+    System.out.printf( "%5d  %-6s   %16.1f %7.1f %7.1f%n", level, kernel,
+                       rate[passes / 2], rate[passes - 1], rate[0] );
+  }
+}
@@ -0,0 +1,434 @@
+/**
+ * Many games of breakout stepped together, for training and testing
+ *  programs that move the bat.
+ *  Each game follows the same rules as Model.ActivePart, but the state
+ *  of all the games is held in flat arrays, one entry per game, rather
+ *  than as GameObjs, and nothing is drawn, timed or published.
+ * Each step
+ *   moves every bat by its action (-1 left, 0 stay, +1 right),
+ *   bounces every ball off the walls, the bat and the bricks,
+ *   moves every ball, and
+ *   fills in STRIDE floats per game
+ *     OBS_SIZE observations   ball x, ball y, ball direction x, y (1 or -1),
+ *                             bat x, bat width, lives left,
+ *                             falling power up x, y and kind (-1 if none)
+ *     reward                  score made this step, HIT_BRICK per brick
+ *                             hit and HIT_BOTTOM for a lost ball
+ *     done                    1 if the game ended this step, else 0
+ *  A game that is done is started again at the beginning of the next step.
+ * The ball is treated as a square, not by its pixels, and explosive
+ *  bricks as plain bricks. Every game plays the same level.
+ *  A game has at most one power up falling at a time, a drop due
+ *  while one is falling is lost.
+ * The effects of the power ups in every game are ended by a single
+ *  timing wheel, so thousands of running effects cost nothing on the
+ *  ticks they are not due.
+ * The phases of a step that loop over every game are in a Kernel.
+ *  The plain one here works on any Java. BatchEnvVector, in src-vector,
+ *  does the same work with the jdk.incubator.vector API, a lane per
+ *  game, and is used when asked for and that module is present.
+ *  Both give the same results to the bit. See BatchBench for how
+ *  fast each is.
+ */
+public class BatchEnv
+{
+  public static final int OBS_SIZE = 10;
+  public static final int STRIDE   = OBS_SIZE + 2;   // Observations, reward, done
+
+  static final byte GONE = 2;                        // Brick hit count once destroyed
+
+  // Read and written by the Kernel, as well as here
+  final int   games;
+  final float w, h;                                  // Size of the play area
+  private final int lives0;                          // Lives at the start
+
+  // One entry per game
+  final float[] x, y, dx, dy;                        // Ball and its direction
+  final float[] batX, batW, batMove;
+  final float[] speed;                               // Ball speed
+  final boolean[] multiHit;                          // Bricks break with one hit
+  final int[]   destroyed;                           // Bricks destroyed, for drops
+  final int[]   nextDrop;                            // Kind of the next drop
+  final float[] dropX, dropY;                        // Falling power up
+  final int[]   dropKind;                            // Its kind, -1 if none
+  private final int[] effects;                       // Per game then per kind, timer ending it
+  private final TimingWheel timers;                  // Shared by all the games
+  private final TimingWheel.Expired expire = this::endEffect;
+  final float[] reward;
+  final int[]   lives;
+  final int[]   left;                                // Bricks left
+  private final boolean[] over;                      // Ended last step
+  private final float[] out;                         // Returned by step()
+
+  // The level, the same in every game
+  final int     nBricks;
+  final float[] bx, by, bw, bh;
+  final float   bandTop, bandBottom;                 // Rows holding bricks
+  final byte[]  hits;                                // Per game then per brick
+
+  final float batY, batH;
+
+  private final Kernel kernel;
+
+  /**
+   * Games stepped by the plain kernel
+   * @param games    Number of games, up to 2^18
+   * @param levelNum Level played by every game, 1 .. Model.LAST_LEVEL
+   */
+  public BatchEnv( int games, int levelNum )
+  {
+    this( games, levelNum, false );
+  }
+
+  /**
+   * @param games    Number of games, up to 2^18
+   * @param levelNum Level played by every game, 1 .. Model.LAST_LEVEL
+   * @param vector   Use BatchEnvVector if it can be loaded, which needs
+   *                 Java 16 or later run with --add-modules jdk.incubator.vector
+   */
+  public BatchEnv( int games, int levelNum, boolean vector )
+  {
+    Level level = Level.build( levelNum );
+    if ( level == null ) throw new IllegalArgumentException( "No level " + levelNum );
+
+    this.games = games;
+    w = Main.W; h = Main.H;
+    lives0 = 3;
+    x = new float[games]; y = new float[games];
+    dx = new float[games]; dy = new float[games];
+    batX   = new float[games]; batW = new float[games]; batMove = new float[games];
+    speed  = new float[games];
+    multiHit  = new boolean[games];
+    destroyed = new int[games]; nextDrop = new int[games];
+    dropX  = new float[games]; dropY = new float[games];
+    dropKind = new int[games];
+    effects  = new int[games * PowerUp.KINDS];
+    java.util.Arrays.fill( effects, -1 );
+    timers = new TimingWheel( games * PowerUp.KINDS );
+    reward = new float[games];
+    lives  = new int[games];
+    left   = new int[games];
+    over   = new boolean[games];
+    out    = new float[games * STRIDE];
+
+    nBricks = level.getBricks().size();
+    bx = new float[nBricks]; by = new float[nBricks];
+    bw = new float[nBricks]; bh = new float[nBricks];
+    float top = Float.MAX_VALUE, bottom = -Float.MAX_VALUE;
+    for ( int j = 0; j < nBricks; j++ )
+    {
+      GameObj b = level.getBricks().get(j);
+      bx[j] = b.getX(); by[j] = b.getY(); bw[j] = b.getWidth(); bh[j] = b.getHeight();
+      top = Math.min( top, by[j] ); bottom = Math.max( bottom, by[j] + bh[j] );
+    }
+    bandTop = top; bandBottom = bottom;
+    hits = new byte[games * nBricks];
+
+    batY = h - Model.BRICK_HEIGHT*2;
+    batH = Model.BRICK_HEIGHT/4;
+
+    for ( int i = 0; i < games; i++ ) reset( i );
+    kernel = vector ? vectorKernel() : new Kernel( this );
+    observe();
+  }
+
+  /**
+   * Load BatchEnvVector by name, so this class does not need the
+   *  vector module to compile or run
+   * @return The vector kernel, or the plain one if it cannot be loaded
+   */
+  private Kernel vectorKernel()
+  {
+    try
+    {
+      return (Kernel) Class.forName( "BatchEnvVector" )
+                           .getDeclaredConstructor( BatchEnv.class ).newInstance( this );
+    } catch (ReflectiveOperationException | LinkageError e)
+    {
+      Debug.trace( "BatchEnv: no vector kernel, %s", e );
+      return new Kernel( this );
+    }
+  }
+
+  /**
+   * Is the vector kernel being used
+   * @return true if BatchEnvVector steps the games
+   */
+  public boolean isVector()             { return kernel.getClass() != Kernel.class; }
+
+  /**
+   * Number of games
+   * @return games stepped by each call to step()
+   */
+  public int size()                     { return games; }
+
+  /**
+   * Start one game again, as Model.createGameObjects() does
+   * @param i The game
+   */
+  public void reset( int i )
+  {
+    x[i] = w/2; y[i] = h/2; dx[i] = 1; dy[i] = 1;
+    batX[i]  = w/2;
+    lives[i] = lives0;
+    for ( int k = 0; k < PowerUp.KINDS; k++ )        // No effects carry over
+      { timers.cancel( effects[i * PowerUp.KINDS + k] ); effects[i * PowerUp.KINDS + k] = -1; }
+    batW[i]  = Model.BRICK_WIDTH*3; batMove[i] = Model.BAT_MOVE;
+    speed[i] = Model.S;
+    multiHit[i]  = false;
+    destroyed[i] = 0; nextDrop[i] = 0;
+    dropKind[i]  = -1;
+    left[i]  = nBricks;
+    over[i]  = false;
+    java.util.Arrays.fill( hits, i * nBricks, (i + 1) * nBricks, (byte) 0 );
+  }
+
+  /**
+   * Observations of every game, without stepping
+   * @return STRIDE floats per game, reward and done are 0
+   */
+  public float[] observe()
+  {
+    for ( int i = 0; i < games; i++ ) reward[i] = 0;
+    return fill( false );
+  }
+
+  /**
+   * Step every game by one tick
+   * @param actions One per game, -1 bat left, 0 stay, +1 bat right
+   * @return STRIDE floats per game, the same array every call
+   */
+  public float[] step( int[] actions )
+  {
+    for ( int i = 0; i < games; i++ )
+      if ( over[i] ) reset( i );
+
+    timers.advance( expire );                        // Effects that run out this step
+
+    kernel.bats( actions, 0, games );
+    kernel.walls( 0, games );
+    kernel.batBounce( 0, games );
+
+    // Power ups caught by the bat or gone off the bottom
+    for ( int i = 0; i < games; i++ )
+    {
+      if ( dropKind[i] < 0 ) continue;
+      if ( dropX[i] < batX[i] + batW[i] && dropX[i] + PowerUp.WIDTH > batX[i] &&
+           dropY[i] < batY + batH && dropY[i] + PowerUp.HEIGHT > batY )
+        { collect( i, dropKind[i] ); dropKind[i] = -1; }
+      else if ( dropY[i] > h )
+        dropKind[i] = -1;
+    }
+
+    kernel.bricks( 0, games );
+    kernel.move( 0, games );
+    return fill( true );
+  }
+
+  /**
+   * A ball has bounced off a brick, count the hit and maybe
+   *  destroy the brick and drop a power up, as Model does
+   * @param i The game
+   * @param j The brick
+   */
+  void hitBrick( int i, int j )
+  {
+    int at = i * nBricks + j;
+    hits[at] = hits[at] == 1 || multiHit[i] ? GONE : (byte) (hits[at] + 1);
+    reward[i] += Model.HIT_BRICK;
+    if ( hits[at] != GONE ) return;
+    left[i]--;
+    if ( ++destroyed[i] % PowerUp.DROP_EVERY == 0 )   // Kinds in turn
+    {
+      if ( dropKind[i] < 0 )
+      {
+        dropKind[i] = nextDrop[i];
+        dropX[i] = bx[j] + bw[j]/2 - PowerUp.WIDTH/2;
+        dropY[i] = by[j] + bh[j]/2 - PowerUp.HEIGHT/2;
+      }
+      nextDrop[i] = (nextDrop[i] + 1) % PowerUp.KINDS;
+    }
+  }
+
+  /**
+   * Start the effect of a power up caught in a game, as Model does
+   */
+  private void collect( int i, int kind )
+  {
+    switch ( kind )
+    {
+      case PowerUp.WIDE_BAT:
+        float wide = Model.BRICK_WIDTH*3 * PowerUp.WIDE;
+        batX[i]    = Math.max( Model.B, Math.min( w - Model.B - wide, batX[i] + batW[i]/2 - wide/2 ) );
+        batW[i]    = wide;
+        batMove[i] = Math.round( Model.BAT_MOVE * PowerUp.WIDE );
+        break;
+      case PowerUp.SLOW_BALL:  speed[i] = PowerUp.SLOW_S; break;
+      case PowerUp.EXTRA_LIFE: lives[i]++;                break;
+      case PowerUp.MULTI_HIT:  multiHit[i] = true;        break;
+    }
+    int e = i * PowerUp.KINDS + kind;
+    if ( PowerUp.TICKS[kind] > 0 )
+    {
+      timers.cancel( effects[e] );
+      effects[e] = timers.schedule( PowerUp.TICKS[kind], kind, i );
+    }
+  }
+
+  /**
+   * An effect has run out, called by the timing wheel
+   * @param kind The power up
+   * @param i    The game
+   */
+  private void endEffect( int kind, int i )
+  {
+    effects[i * PowerUp.KINDS + kind] = -1;
+    switch ( kind )
+    {
+      case PowerUp.WIDE_BAT:
+        float narrow = Model.BRICK_WIDTH*3;
+        batX[i]    = Math.max( Model.B, Math.min( w - Model.B - narrow, batX[i] + batW[i]/2 - narrow/2 ) );
+        batW[i]    = narrow;
+        batMove[i] = Model.BAT_MOVE;
+        break;
+      case PowerUp.SLOW_BALL: speed[i] = Model.S;    break;
+      case PowerUp.MULTI_HIT: multiHit[i] = false;   break;
+    }
+  }
+
+  /**
+   * Bounce a ball off a rectangle it overlaps, as GameObj.collide()
+   *  and Model.ActivePart.bounce() do
+   * @return true if the ball hit the rectangle
+   */
+  boolean bounce( int i, float ox, float oy, float ow, float oh )
+  {
+    final float size = Model.BALL_SIZE;
+    float overlapX = Math.min( x[i] + size, ox + ow ) - Math.max( x[i], ox );
+    float overlapY = Math.min( y[i] + size, oy + oh ) - Math.max( y[i], oy );
+    if ( overlapX <= 0 || overlapY <= 0 ) return false;
+
+    if ( overlapX < overlapY )                       // Hit a side
+    {
+      float side = x[i] + size/2 < ox + ow/2 ? -1 : 1;
+      if ( side * dx[i] < 0 ) dx[i] = -dx[i];
+      x[i] += side * overlapX;
+    } else {                                         // Hit the top or bottom
+      float side = y[i] + size/2 < oy + oh/2 ? -1 : 1;
+      if ( side * -dy[i] < 0 ) dy[i] = -dy[i];
+      y[i] += side * overlapY;
+    }
+    return true;
+  }
+
+  /**
+   * Write the results of a step into out
+   */
+  private float[] fill( boolean stepped )
+  {
+    for ( int i = 0; i < games; i++ )
+    {
+      int o = i * STRIDE;
+      out[o]     = x[i];   out[o + 1] = y[i];
+      out[o + 2] = dx[i];  out[o + 3] = dy[i];
+      out[o + 4] = batX[i];  out[o + 5] = batW[i];
+      out[o + 6] = lives[i];
+      out[o + 7] = dropX[i]; out[o + 8] = dropY[i];
+      out[o + 9] = dropKind[i];
+      out[o + 10] = reward[i];
+      over[i]    = stepped && ( lives[i] <= 0 || left[i] <= 0 );
+      out[o + 11] = over[i] ? 1 : 0;
+    }
+    return out;
+  }
+
+  /**
+   * The phases of a step that work on every game in turn, each on
+   *  the games from..to-1. BatchEnvVector overrides them to work on
+   *  many games at once, and calls these for the games left over
+   */
+  static class Kernel
+  {
+    final BatchEnv env;
+
+    Kernel( BatchEnv env )  { this.env = env; }
+
+    /**
+     * Move the bats, as Model.moveBat()
+     */
+    void bats( int[] actions, int from, int to )
+    {
+      final BatchEnv e = env;
+      final float lo = Model.B, hi = e.w - Model.B;
+      for ( int i = from; i < to; i++ )
+      {
+        float at = e.batX[i] + Math.signum( (float) actions[i] ) * e.batMove[i];
+        e.batX[i] = at > lo && at < hi - e.batW[i] ? at : e.batX[i];
+      }
+    }
+
+    /**
+     * Bounce the balls off the walls, a lost ball goes back to the middle
+     */
+    void walls( int from, int to )
+    {
+      final BatchEnv e = env;
+      final float lo = Model.B, hiX = e.w - Model.B - Model.BALL_SIZE;
+      final float hiY = e.h - Model.B - Model.BALL_SIZE, top = Model.M;
+      for ( int i = from; i < to; i++ )
+      {
+        float bx_ = e.x[i], by_ = e.y[i];
+        boolean side   = bx_ >= hiX || bx_ <= lo;
+        boolean bottom = by_ >= hiY;
+        e.dx[i]     = side ^ bottom ? -e.dx[i] : e.dx[i];
+        e.dy[i]     = bottom || by_ <= top ? -e.dy[i] : e.dy[i];
+        e.y[i]      = bottom ? e.h/2 : by_;
+        e.reward[i] = bottom ? Model.HIT_BOTTOM : 0;
+        e.lives[i] -= bottom ? 1 : 0;
+      }
+    }
+
+    /**
+     * Bounce the balls off the bats
+     */
+    void batBounce( int from, int to )
+    {
+      final BatchEnv e = env;
+      for ( int i = from; i < to; i++ )
+        e.bounce( i, e.batX[i], e.batY, e.batW[i], e.batH );
+    }
+
+    /**
+     * Bounce the balls off the bricks, in brick order, only for
+     *  balls level with the bricks
+     */
+    void bricks( int from, int to )
+    {
+      final BatchEnv e = env;
+      for ( int i = from; i < to; i++ )
+      {
+        if ( e.y[i] + Model.BALL_SIZE <= e.bandTop || e.y[i] >= e.bandBottom ) continue;
+        int base = i * e.nBricks;
+        for ( int j = 0; j < e.nBricks; j++ )
+        {
+          if ( e.hits[base + j] == GONE ) continue;
+          if ( e.bounce( i, e.bx[j], e.by[j], e.bw[j], e.bh[j] ) ) e.hitBrick( i, j );
+        }
+      }
+    }
+
+    /**
+     * Move the balls and power ups, balls up the screen when dy is 1
+     */
+    void move( int from, int to )
+    {
+      final BatchEnv e = env;
+      for ( int i = from; i < to; i++ )
+      {
+        e.x[i] += e.speed[i] * e.dx[i];
+        e.y[i] -= e.speed[i] * e.dy[i];
+        e.dropY[i] += e.dropKind[i] >= 0 ? PowerUp.FALL : 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,77 @@
+import java.util.Random;
+
+/**
+ * Checks the vector kernel of BatchEnv against the plain one, both
+ *  playing every level with the same random bat moves
+ *    java --add-modules jdk.incubator.vector BatchEnvTest
+ *  with BatchEnvVector compiled from src-vector, see BatchEnvVector.
+ *  Without it only the plain kernel is checked, against itself.
+ * Prints each failure and exits with 1 if there were any, so it can
+ *  be run as a check on a machine with no screen.
+ */
+public class BatchEnvTest
+{
+  private static final int GAMES = 1000 + 3;   // Not a whole number of vectors
+  private static final int STEPS = 5000;
+
+  private static int failures = 0;
+
+  public static void main( String args[] )
+  {
+    Debug.set( false );
+    boolean vector = new BatchEnv( 1, 1, true ).isVector();
+    if ( !vector )
+      System.out.println( "BatchEnvTest: no vector kernel, checking the plain kernel against itself" );
+    for ( int level = 1; level <= Model.LAST_LEVEL && failures < 10; level++ )
+      same( level, vector );
+    System.out.printf( "BatchEnvTest: %d failures%n", failures );
+    if ( failures > 0 ) System.exit( 1 );
+  }
+
+  private static void check( boolean ok, String what, Object... args )
+  {
+    if ( ok ) return;
+    failures++;
+    System.out.printf( "FAIL " + what + "%n", args );
+  }
+
+  /**
+   * Step both kernels with the same moves, every output and every
+   *  brick must be the same after every step
+   */
+  private static void same( int level, boolean vector )
+  {
+    BatchEnv plain = new BatchEnv( GAMES, level );
+    BatchEnv other = new BatchEnv( GAMES, level, vector );
+    Random r = new Random( level );
+    int[] actions = new int[GAMES];
+    int bricks = 0, drops = 0, lost = 0;
+    for ( int t = 0; t < STEPS; t++ )
+    {
+      for ( int i = 0; i < GAMES; i++ ) actions[i] = r.nextInt( 3 ) - 1;
+      float[] a = plain.step( actions );
+      float[] b = other.step( actions );
+      for ( int k = 0; k < a.length; k++ )
+        if ( Float.floatToRawIntBits( a[k] ) != Float.floatToRawIntBits( b[k] ) )
+        {
+          check( false, "level %d step %d game %d value %d is %s, plain %s",
+                 level, t, k / BatchEnv.STRIDE, k % BatchEnv.STRIDE, b[k], a[k] );
+          return;
+        }
+      if ( !java.util.Arrays.equals( plain.hits, other.hits ) )
+      {
+        check( false, "level %d step %d bricks differ", level, t );
+        return;
+      }
+      for ( int i = 0; i < GAMES; i++ )
+      {
+        int o = i * BatchEnv.STRIDE;
+        if ( a[o + 10] > 0 ) bricks++;
+        if ( a[o + 10] < 0 ) lost++;
+        if ( a[o + 9] >= 0 ) drops++;
+      }
+    }
+    check( bricks > 0 && lost > 0, "level %d hit %d bricks and lost %d balls", level, bricks, lost );
+    check( drops > 0 || plain.nBricks < PowerUp.DROP_EVERY, "level %d dropped no power ups", level );
+  }
+}
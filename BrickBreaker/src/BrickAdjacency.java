@@ -0,0 +1,124 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Which bricks touch which, worked out once when a level is built.
+ *  The neighbours of every brick are held in one array, brick i's
+ *  neighbours being entries start(i) to end(i) - 1, so finding them
+ *  costs nothing more than reading them.
+ * Bricks are sorted into a grid of cells the size of the largest
+ *  brick, so each brick is only compared with bricks in the cells
+ *  around it, and building the index is close to linear in the
+ *  number of bricks.
+ */
+public class BrickAdjacency
+{
+  private static final float TOUCH = 0.05f; // Gap still counted as touching, part of a brick
+
+  private final int[] start;                // Brick i's neighbours start here
+  private int[] neighbours;                 // Indexes of neighbouring bricks
+
+  /**
+   * Build the index for the bricks of a level
+   * @param bricks The bricks, indexes match this list
+   */
+  public BrickAdjacency( List<GameObj> bricks )
+  {
+    int n = bricks.size();
+    float[] x = new float[n], y = new float[n], w = new float[n], h = new float[n];
+    float cw = Float.MIN_NORMAL, ch = Float.MIN_NORMAL; // Cell size
+    for ( int i = 0; i < n; i++ )
+    {
+      GameObj b = bricks.get(i);
+      x[i] = b.getX(); y[i] = b.getY(); w[i] = b.getWidth(); h[i] = b.getHeight();
+      cw = Math.max( cw, w[i] ); ch = Math.max( ch, h[i] );
+    }
+    float gap = TOUCH * Math.min( cw, ch );
+
+    // Bricks sorted by the cell holding their top left corner
+    long[] byCell = new long[n];
+    for ( int i = 0; i < n; i++ )
+      byCell[i] = ( (long) cell( x[i], cw, y[i], ch ) << 32 ) | i;
+    Arrays.sort( byCell );
+
+    start      = new int[n + 1];
+    neighbours = new int[n * 8];
+    int used = 0;
+    for ( int i = 0; i < n; i++ )
+    {
+      start[i] = used;
+      int cx0 = (int) Math.floor( (x[i] - cw - gap) / cw ), cx1 = (int) Math.floor( (x[i] + w[i] + gap) / cw );
+      int cy0 = (int) Math.floor( (y[i] - ch - gap) / ch ), cy1 = (int) Math.floor( (y[i] + h[i] + gap) / ch );
+      for ( int cx = cx0; cx <= cx1; cx++ )
+        for ( int cy = cy0; cy <= cy1; cy++ )
+        {
+          int  key = cellKey( cx, cy );
+          int  k   = first( byCell, key );
+          for ( ; k < n && (int) (byCell[k] >> 32) == key; k++ )
+          {
+            int j = (int) byCell[k];
+            if ( j == i || !touching( x, y, w, h, gap, i, j ) ) continue;
+            if ( used == neighbours.length ) neighbours = Arrays.copyOf( neighbours, used * 2 + 8 );
+            neighbours[used++] = j;
+          }
+        }
+    }
+    start[n] = used;
+    Debug.trace( "BrickAdjacency: %d bricks, %d links", n, used );
+  }
+
+  /**
+   * Where a brick's neighbours start
+   * @param brick Index of the brick
+   * @return Position of the first neighbour, see get()
+   */
+  public int start( int brick )   { return start[brick]; }
+
+  /**
+   * Where a brick's neighbours end
+   * @param brick Index of the brick
+   * @return Position after the last neighbour, see get()
+   */
+  public int end( int brick )     { return start[brick + 1]; }
+
+  /**
+   * A neighbour
+   * @param k Position, from start(i) to end(i) - 1
+   * @return Index of the neighbouring brick
+   */
+  public int get( int k )         { return neighbours[k]; }
+
+  private static int cell( float x, float cw, float y, float ch )
+  {
+    return cellKey( (int) Math.floor( x / cw ), (int) Math.floor( y / ch ) );
+  }
+
+  /**
+   * Cells far apart may share a key, touching() sorts them out
+   */
+  private static int cellKey( int cx, int cy )
+  {
+    return cx * 65599 + cy;
+  }
+
+  /**
+   * First entry for a cell, or where it would be
+   */
+  private static int first( long[] byCell, int key )
+  {
+    int lo = 0, hi = byCell.length;
+    while ( lo < hi )
+    {
+      int mid = (lo + hi) >>> 1;
+      if ( (int) (byCell[mid] >> 32) < key ) lo = mid + 1; else hi = mid;
+    }
+    return lo;
+  }
+
+  private static boolean touching( float[] x, float[] y, float[] w, float[] h,
+                                   float gap, int i, int j )
+  {
+    return x[j] <= x[i] + w[i] + gap && x[i] <= x[j] + w[j] + gap &&
+           y[j] <= y[i] + h[i] + gap && y[i] <= y[j] + h[j] + gap;
+  }
+}
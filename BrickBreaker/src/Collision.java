@@ -0,0 +1,55 @@
+/**
+ * Result of testing two game objects for a collision.
+ *  Says if they overlap, which side of the other object was hit
+ *  and by how much they overlap.
+ * One object is filled in again and again, so testing many
+ *  objects every tick does not create garbage.
+ * @see GameObj#collide(GameObj, Collision)
+ */
+public class Collision
+{
+  private boolean hit     = false;
+  private float   normalX = 0.0f;  // Direction out of the side hit
+  private float   normalY = 0.0f;  //  (-1, 0 or 1)
+  private float   depth   = 0.0f;  // Overlap along the normal
+
+  /**
+   * Record the result of a test
+   * @param hit     Do the objects overlap
+   * @param normalX X direction out of the side hit
+   * @param normalY Y direction out of the side hit
+   * @param depth   Overlap along the normal
+   */
+  void set( boolean hit, float normalX, float normalY, float depth )
+  {
+    this.hit = hit;
+    this.normalX = normalX; this.normalY = normalY;
+    this.depth = depth;
+  }
+
+  /**
+   * Did the objects overlap
+   * @return true if there was a collision
+   */
+  public boolean isHit()      { return hit; }
+
+  /**
+   * X direction to push the moving object out of the one it hit.
+   *  -1 the left side was hit, 1 the right side, 0 top or bottom
+   * @return -1, 0 or 1
+   */
+  public float getNormalX()   { return normalX; }
+
+  /**
+   * Y direction to push the moving object out of the one it hit.
+   *  -1 the top was hit, 1 the bottom, 0 left or right
+   * @return -1, 0 or 1
+   */
+  public float getNormalY()   { return normalY; }
+
+  /**
+   * How far the objects overlap along the normal
+   * @return distance in pixels
+   */
+  public float getDepth()     { return depth; }
+}
@@ -0,0 +1,136 @@
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Which pixels of a sprite are solid, as drawn at a given size.
+ *  Each row is packed into 64 bit words, one bit per pixel, so two
+ *  masks are compared a word (64 pixels) at a time.
+ * Masks are made once from the sprite's alpha channel and cached.
+ *  A sprite with no see through pixels has no mask (null), and is
+ *  treated as a solid rectangle.
+ */
+public class CollisionMask
+{
+  private static final int SOLID_ALPHA = 128;  // Alpha counted as solid
+  private static final Map<String,CollisionMask> cache = new HashMap<>();
+  private static final CollisionMask NONE = new CollisionMask( 0, 0 );
+
+  private final int    width;
+  private final int    height;
+  private final int    words;     // Words per row
+  private final long[] bits;      // Bit x of a row is pixel x, lowest bit first
+
+  private CollisionMask( int width, int height )
+  {
+    this.width  = width;
+    this.height = height;
+    words = (width + 63) >>> 6;
+    bits  = new long[words * height];
+  }
+
+  /**
+   * The mask for a sprite in the assets drawn at a size
+   * @param name   File name of the asset
+   * @param width  Width the sprite is drawn at
+   * @param height Height the sprite is drawn at
+   * @return The mask, or null if the sprite is solid or cannot be read
+   */
+  public static synchronized CollisionMask forSprite( String name, int width, int height )
+  {
+    String key = name + "@" + width + "x" + height;
+    CollisionMask mask = cache.get( key );
+    if ( mask == null )
+    {
+      mask = NONE;
+      BufferedImage image = Assets.image( name );
+      if ( image != null ) mask = fromImage( image, width, height );
+      cache.put( key, mask );
+    }
+    return mask == NONE ? null : mask;
+  }
+
+  /**
+   * Make a mask from an image's alpha channel
+   * @param image  The image
+   * @param width  Width the image is drawn at
+   * @param height Height the image is drawn at
+   * @return The mask, or NONE if every pixel is solid
+   */
+  private static CollisionMask fromImage( Image image, int width, int height )
+  {
+    if ( width <= 0 || height <= 0 ) return NONE;
+    BufferedImage scaled = new BufferedImage( width, height, BufferedImage.TYPE_INT_ARGB );
+    Graphics2D g = scaled.createGraphics();
+    g.drawImage( image, 0, 0, width, height, null );
+    g.dispose();
+
+    CollisionMask mask = new CollisionMask( width, height );
+    int[] row = new int[width];
+    boolean solid = true;
+    for ( int y = 0; y < height; y++ )
+    {
+      scaled.getRGB( 0, y, width, 1, row, 0, width );
+      for ( int x = 0; x < width; x++ )
+      {
+        if ( (row[x] >>> 24) >= SOLID_ALPHA )
+          mask.bits[y * mask.words + (x >>> 6)] |= 1L << (x & 63);
+        else
+          solid = false;
+      }
+    }
+    return solid ? NONE : mask;
+  }
+
+  /**
+   * 64 pixels of a row starting at a pixel, pixels past the
+   *  edge of the sprite are empty
+   */
+  private long bitsAt( int y, int x )
+  {
+    int  base = y * words;
+    int  w    = x >>> 6, off = x & 63;
+    long v    = bits[base + w] >>> off;
+    if ( off != 0 && w + 1 < words ) v |= bits[base + w + 1] << (64 - off);
+    return v;
+  }
+
+  /**
+   * Do the solid pixels of two objects overlap.
+   *  Only called once their rectangles are known to overlap.
+   *  Positions are rounded to whole pixels
+   * @param a  First object
+   * @param ma Mask of the first object, null if solid
+   * @param b  Second object
+   * @param mb Mask of the second object, null if solid
+   * @return true if any solid pixels overlap
+   */
+  public static boolean overlaps( GameObj a, CollisionMask ma, GameObj b, CollisionMask mb )
+  {
+    int ax = Math.round( a.getX() ), ay = Math.round( a.getY() );
+    int bx = Math.round( b.getX() ), by = Math.round( b.getY() );
+    int aw = ma != null ? ma.width  : (int) a.getWidth();
+    int ah = ma != null ? ma.height : (int) a.getHeight();
+    int bw = mb != null ? mb.width  : (int) b.getWidth();
+    int bh = mb != null ? mb.height : (int) b.getHeight();
+
+    int x0 = Math.max( ax, bx ), x1 = Math.min( ax + aw, bx + bw );
+    int y0 = Math.max( ay, by ), y1 = Math.min( ay + ah, by + bh );
+    if ( x0 >= x1 || y0 >= y1 ) return false;
+
+    for ( int y = y0; y < y1; y++ )
+    {
+      for ( int x = x0; x < x1; x += 64 )
+      {
+        int  n    = Math.min( 64, x1 - x );
+        long keep = n == 64 ? -1L : (1L << n) - 1;
+        long wa   = ma != null ? ma.bitsAt( y - ay, x - ax ) : -1L;
+        long wb   = mb != null ? mb.bitsAt( y - by, x - bx ) : -1L;
+        if ( (wa & wb & keep) != 0 ) return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,114 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Checks CollisionMask against the sprites' own pixels
+ *    java -Djava.awt.headless=true CollisionMaskTest
+ * Prints each failure and exits with 1 if there were any, so it can
+ *  be run as a check on a machine with no screen.
+ */
+public class CollisionMaskTest
+{
+  private static final int SOLID_ALPHA = 128;  // As CollisionMask
+
+  private static int failures = 0;
+
+  public static void main( String args[] )
+  {
+    Debug.set( false );
+    ballCorners();
+    randomOverlaps();
+    System.out.printf( "CollisionMaskTest: %d failures%n", failures );
+    if ( failures > 0 ) System.exit( 1 );
+  }
+
+  private static void check( boolean ok, String what, Object... args )
+  {
+    if ( ok ) return;
+    failures++;
+    System.out.printf( "FAIL " + what + "%n", args );
+  }
+
+  /**
+   * Two balls whose boxes only overlap at the corners do not collide,
+   *  two balls nearly on top of each other do
+   */
+  private static void ballCorners()
+  {
+    CollisionMask m = CollisionMask.forSprite( "ball.png", 30, 30 );
+    check( m != null, "ball.png has no mask" );
+    GameObj a = new GameObj( 100, 100, 30, 30, Colour.WHITE );
+    GameObj b = new GameObj( 126, 126, 30, 30, Colour.WHITE );
+    a.setMask( m ); b.setMask( m );
+    Collision c = new Collision();
+    check( a.hitBy( b ), "boxes at the corner do not overlap" );
+    check( !a.collide( b, c ), "balls touching at the corners of their boxes collide" );
+    b.setPosition( 105, 105 );
+    check( a.collide( b, c ), "balls on top of each other do not collide" );
+  }
+
+  /**
+   * overlaps() compares a word of pixels at a time, it must agree
+   *  with comparing the pixels one by one, wherever the objects are
+   */
+  private static void randomOverlaps()
+  {
+    String[] names = { "ball.png", "bat.png", "bat.png", "brick0.png", "brick1.png" };
+    int[][]  sizes = { { 30, 30 }, { 150, 10 }, { 225, 10 }, { 50, 20 }, { 70, 25 } };
+    boolean[][] solid = new boolean[names.length][];
+    CollisionMask[] masks = new CollisionMask[names.length];
+    for ( int i = 0; i < names.length; i++ )
+    {
+      masks[i] = CollisionMask.forSprite( names[i], sizes[i][0], sizes[i][1] );
+      solid[i] = pixels( names[i], sizes[i][0], sizes[i][1] );
+    }
+
+    Random r = new Random( 1 );
+    int hits = 0, misses = 0;
+    for ( int n = 0; n < 20000 && failures < 10; n++ )
+    {
+      int i = r.nextInt( names.length ), j = r.nextInt( names.length );
+      int aw = sizes[i][0], ah = sizes[i][1], bw = sizes[j][0], bh = sizes[j][1];
+      float ax = 200 + r.nextInt( 20 ) * 0.25f, ay = 200 + r.nextInt( 20 ) * 0.25f;
+      float bx = ax - bw + 1 + r.nextInt( aw + bw - 1 ) + r.nextFloat();
+      float by = ay - bh + 1 + r.nextInt( ah + bh - 1 ) + r.nextFloat();
+      GameObj a = new GameObj( ax, ay, aw, ah, Colour.WHITE );
+      GameObj b = new GameObj( bx, by, bw, bh, Colour.WHITE );
+
+      boolean expected = false;
+      int ox = Math.round( bx ) - Math.round( ax ), oy = Math.round( by ) - Math.round( ay );
+      for ( int y = 0; y < ah && !expected; y++ )
+        for ( int x = 0; x < aw && !expected; x++ )
+        {
+          int u = x - ox, v = y - oy;
+          expected = solid[i][y * aw + x] && u >= 0 && u < bw && v >= 0 && v < bh &&
+                     solid[j][v * bw + u];
+        }
+      boolean got = CollisionMask.overlaps( a, masks[i], b, masks[j] );
+      check( got == expected, "%s at %.2f,%.2f and %s at %.2f,%.2f overlap %b, pixels say %b",
+             names[i], ax, ay, names[j], bx, by, got, expected );
+      if ( expected ) hits++; else misses++;
+    }
+    check( hits > 0 && misses > 0, "only %d hits and %d misses tried", hits, misses );
+  }
+
+  /**
+   * Which pixels of a sprite are solid when drawn at a size,
+   *  worked out from the image without CollisionMask
+   */
+  private static boolean[] pixels( String name, int width, int height )
+  {
+    BufferedImage image = Assets.image( name );
+    boolean[] solid = new boolean[width * height];
+    if ( image == null ) { check( false, "cannot read %s", name ); return solid; }
+    BufferedImage scaled = new BufferedImage( width, height, BufferedImage.TYPE_INT_ARGB );
+    Graphics2D g = scaled.createGraphics();
+    g.drawImage( image, 0, 0, width, height, null );
+    g.dispose();
+    for ( int y = 0; y < height; y++ )
+      for ( int x = 0; x < width; x++ )
+        solid[y * width + x] = (scaled.getRGB( x, y ) >>> 24) >= SOLID_ALPHA;
+    return solid;
+  }
+}
@@ -35,7 +35,7 @@ public class Controller
 		  }
 	  } else if (model.getGameState() == 2){
 
-	  	  if (model.getLevelNum() < 5){
+	  	  if (model.getLevelNum() < Model.LAST_LEVEL){
 
               switch (keyCode) {
                   case -KeyEvent.VK_ENTER:
@@ -47,6 +47,24 @@ public class Controller
                       break;
               }
 
+          } else {
+
+              // Game complete, play again from the first level
+              switch (keyCode) {
+                  case -KeyEvent.VK_ENTER:
+
+                      model.setLevel(1);
+                      model.createGameObjects();       // Ball, Bat & Bricks
+                      model.setGameState(1);
+                      model.resetScores();
+                      model.startGame();
+                      break;
+
+                  case -KeyEvent.VK_ESCAPE:
+
+                      model.exitGame();
+                      break;
+              }
           }
       } else if (model.getGameState() == 3){
 
@@ -67,11 +85,21 @@ public class Controller
           }
       }
 
+      else if (model.isPaused()) {
+
+          // Only un-pausing while paused
+          if (keyCode == 'p') model.resumeGame();
+      }
+
       else {
 		// Key typed includes specials, -ve
 		    // Char is ASCII value
 		    switch ( keyCode )               // Character is
 		    {
+		      case 'p':
+		        // Pause, game thread waits
+		        model.pauseGame();
+		        break;
 		      case -KeyEvent.VK_LEFT:        // Left Arrow
 		        model.moveBat( -1);
 		        break;
@@ -0,0 +1,152 @@
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Passes game events from the game loop to other parts of the program.
+ *  Events are written into a fixed size ring of slots, nothing is
+ *  allocated when an event is published and the publisher never
+ *  waits for a consumer.
+ * Each consumer runs in its own thread and reads every event in order.
+ *  A consumer that falls a whole ring behind skips the events it
+ *  missed, rather than hold up the game.
+ * Only one thread (the game loop) may publish.
+ */
+public class EventBus
+{
+  /**
+   * Told about each event, in the consumer's own thread
+   */
+  public interface Handler
+  {
+    void onEvent( int type, float x, float y, int value );
+  }
+
+  private final int     size;             // Number of slots (power of 2)
+  private final int     mask;
+  private final int[]   types;
+  private final float[] xs;
+  private final float[] ys;
+  private final int[]   values;
+  private final AtomicLong published = new AtomicLong(0); // Next to write
+  private final CopyOnWriteArrayList<Consumer> consumers = new CopyOnWriteArrayList<>();
+  private final CopyOnWriteArrayList<Handler>  direct    = new CopyOnWriteArrayList<>();
+
+  /**
+   * @param capacity Number of events that can be waiting, rounded up to a power of 2
+   */
+  public EventBus( int capacity )
+  {
+    size   = Integer.highestOneBit( Math.max( 2, capacity - 1 ) ) << 1;
+    mask   = size - 1;
+    types  = new int[size];
+    xs     = new float[size];
+    ys     = new float[size];
+    values = new int[size];
+  }
+
+  /**
+   * Publish an event, called only from the game loop
+   * @param type  Type of event, see GameEvent
+   * @param x     X position of the event
+   * @param y     Y position of the event
+   * @param value Value, depends on type of event
+   */
+  public void publish( int type, float x, float y, int value )
+  {
+    long seq  = published.get();
+    int  slot = (int) seq & mask;
+    types[slot] = type; xs[slot] = x; ys[slot] = y; values[slot] = value;
+    published.set( seq + 1 );                 // Make slot visible
+
+    for ( Consumer c : consumers )            // Wake any sleeping consumers
+      c.wake();
+    for ( Handler h : direct )                // Told before publish returns
+      h.onEvent( type, x, y, value );
+  }
+
+  /**
+   * Add a handler told about each event in the publisher's thread,
+   *  before publish() returns. Slows the publisher down, so only for
+   *  when events must be seen at the tick they happen, such as when
+   *  exporting frames off screen
+   * @param handler Called for each event
+   */
+  public void subscribeDirect( Handler handler )
+  {
+    direct.add( handler );
+  }
+
+  /**
+   * Add a consumer, which sees events published from now on
+   * @param name    Name of the consumer's thread
+   * @param handler Called for each event
+   */
+  public void subscribe( String name, Handler handler )
+  {
+    Consumer c = new Consumer( handler, published.get() );
+    consumers.add( c );
+    Thread t = new Thread( c::run, name );
+    t.setDaemon(true);
+    c.thread = t;
+    t.start();
+  }
+
+  /**
+   * One consumer and how far it has read
+   */
+  private class Consumer
+  {
+    private final Handler  handler;
+    private long           next;             // Next event to read
+    private long           dropped = 0;      // Events missed by falling behind
+    private volatile boolean sleeping = false;
+    private volatile Thread  thread;
+
+    Consumer( Handler handler, long start )
+    {
+      this.handler = handler; this.next = start;
+    }
+
+    void wake()
+    {
+      if ( sleeping ) { sleeping = false; LockSupport.unpark( thread ); }
+    }
+
+    void run()
+    {
+      while ( true )
+      {
+        long avail = published.get();
+        if ( avail == next )
+        {
+          sleeping = true;
+          if ( published.get() == next ) LockSupport.park( this );
+          sleeping = false;
+          continue;
+        }
+        if ( avail - next >= size )         // Lapped, skip what was lost
+        {
+          dropped += avail - next - size + 1;
+          next = avail - size + 1;
+          Debug.trace( "EventBus: %s behind, %d events dropped",
+                       Thread.currentThread().getName(), dropped );
+        }
+        int slot = (int) next & mask;
+        int type = types[slot]; float x = xs[slot]; float y = ys[slot];
+        int value = values[slot];
+        if ( published.get() - next >= size ) continue; // Overwritten as read
+
+        next++;
+        try
+        {
+          handler.onEvent( type, x, y, value );
+        } catch (Exception e)
+        {
+          Debug.error("EventBus - %s failed on %s\n%s", Thread.currentThread().getName(),
+                      GameEvent.name(type), e.getMessage() );
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,76 @@
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compare frames saved by FrameExporter against a baseline, to see
+ *  what a change to the drawing did
+ *    java FrameDiff baselineDir newDir
+ * Prints each frame that differs, with the number of pixels changed
+ *  and the box around them. Exits with 1 if any frame differs or is
+ *  missing, so it can be used as a check on a machine with no screen.
+ */
+public class FrameDiff
+{
+  public static void main( String args[] ) throws IOException
+  {
+    if ( args.length != 2 )
+    {
+      System.out.println( "Usage: java FrameDiff baselineDir newDir" );
+      return;
+    }
+    File[] frames = new File( args[0] ).listFiles( (d, n) -> n.endsWith( ".png" ) );
+    if ( frames == null ) throw new IOException( "Not a directory " + args[0] );
+    Arrays.sort( frames );
+
+    int differ = 0;
+    for ( File base : frames )
+    {
+      File other = new File( args[1], base.getName() );
+      if ( !other.isFile() )
+      {
+        System.out.printf( "%s missing%n", base.getName() );
+        differ++;
+        continue;
+      }
+      String diff = compare( ImageIO.read( base ), ImageIO.read( other ) );
+      if ( diff != null )
+      {
+        System.out.printf( "%s %s%n", base.getName(), diff );
+        differ++;
+      }
+    }
+    System.out.printf( "%d of %d frames differ%n", differ, frames.length );
+    System.exit( differ == 0 ? 0 : 1 );
+  }
+
+  /**
+   * Compare two pictures
+   * @return null if the same, otherwise what is different
+   */
+  private static String compare( BufferedImage a, BufferedImage b )
+  {
+    int w = a.getWidth(), h = a.getHeight();
+    if ( w != b.getWidth() || h != b.getHeight() )
+      return String.format( "size %dx%d, was %dx%d", b.getWidth(), b.getHeight(), w, h );
+
+    int[] ra = new int[w], rb = new int[w];
+    int changed = 0, x0 = w, y0 = h, x1 = -1, y1 = -1;
+    for ( int y = 0; y < h; y++ )
+    {
+      a.getRGB( 0, y, w, 1, ra, 0, w );
+      b.getRGB( 0, y, w, 1, rb, 0, w );
+      for ( int x = 0; x < w; x++ )
+      {
+        if ( ra[x] == rb[x] ) continue;
+        changed++;
+        x0 = Math.min( x0, x ); x1 = Math.max( x1, x );
+        y0 = Math.min( y0, y ); y1 = Math.max( y1, y );
+      }
+    }
+    return changed == 0 ? null
+         : String.format( "%d pixels changed in (%d,%d)-(%d,%d)", changed, x0, y0, x1, y1 );
+  }
+}
@@ -0,0 +1,184 @@
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays the game off screen and saves every frame, to make videos
+ *  and to compare pictures before and after a change to the drawing
+ *  (see FrameDiff). Needs no screen
+ *    java -Djava.awt.headless=true Main --export frames --frames 600
+ * The game is played by OfflineGame in this thread and each frame
+ *  drawn by the GameRenderer the View uses, on a fixed clock.
+ *  So the same build always gives the same frames.
+ * Frames are drawn into a small pool of images and encoded by one
+ *  worker per core, then written in order by this thread. When every
+ *  image is waiting to be encoded or written the game waits, so
+ *  memory use stays the same however many frames are saved.
+ * Output
+ *  dir   frame000000.png, frame000001.png ... one PNG per frame
+ *  -     raw 24 bit RGB frames on standard output, for an encoder
+ *          java -Djava.awt.headless=true Main --export - |
+ *            ffmpeg -f rawvideo -pix_fmt rgb24 -s 600x800 -r 60 -i - game.mp4
+ *        Anything else printed goes to standard error
+ */
+public class FrameExporter
+{
+  private final Model        model;
+  private final GameRenderer renderer;
+  private final Path         dir;               // null for raw frames
+  private final OutputStream raw;               // Standard output, if raw
+  private final int          width, height;
+  private final BlockingQueue<BufferedImage> free;        // Images not in use
+  private final ArrayDeque<Future<byte[]>>   pending = new ArrayDeque<>(); // In frame order
+  private final int          maxPending;
+  private final ExecutorService encoders;
+  private int written = 0;                      // Frames written
+
+  /**
+   * @param width  Width of a frame
+   * @param height Height of a frame
+   * @param dir    Directory for PNG files, null for raw frames on standard output
+   * @throws IOException if the directory cannot be made
+   */
+  public FrameExporter( int width, int height, Path dir ) throws IOException
+  {
+    this.width = width; this.height = height; this.dir = dir;
+    if ( dir != null )
+    {
+      Files.createDirectories( dir );
+      raw = null;
+    } else {
+      raw = new BufferedOutputStream( new FileOutputStream( FileDescriptor.out ), 1 << 20 );
+      System.setOut( System.err );              // Keep frames clean
+    }
+    ImageIO.setUseCache( false );               // Encode in memory, not temp files
+
+    model    = new Model( width, height );
+    renderer = new GameRenderer( width, height );
+    renderer.setFixedFrameTime( 1.0f / OfflineGame.FPS );
+    model.getEvents().subscribeDirect( renderer.getParticles() ); // At the tick
+
+    int workers = Runtime.getRuntime().availableProcessors();
+    maxPending = 2 * workers;                   // Keeps every worker busy
+    free = new ArrayBlockingQueue<>( maxPending + 1 );
+    for ( int i = 0; i < maxPending + 1; i++ )
+      free.add( new BufferedImage( width, height, BufferedImage.TYPE_INT_RGB ) );
+    encoders = Executors.newFixedThreadPool( workers, r -> {
+      Thread t = new Thread( r, "FrameEncoder" );
+      t.setDaemon(true);
+      return t;
+    } );
+  }
+
+  /**
+   * Play through the levels, saving each frame, until the game
+   *  ends or enough frames have been saved
+   * @param frames Most frames to save
+   * @return Number of frames saved
+   * @throws IOException if a frame cannot be encoded or written
+   */
+  public int run( int frames ) throws IOException
+  {
+    long start = System.nanoTime();
+    boolean debug = Debug.set( false );         // Not every bat move
+    try
+    {
+      OfflineGame game = new OfflineGame( model );
+      for ( int n = 0; n < frames && game.advance(); n++ )
+      {
+        renderer.update( model );
+        submit();
+      }
+      while ( !pending.isEmpty() ) writeOldest();
+      if ( raw != null ) raw.flush();
+    } catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    } finally
+    {
+      encoders.shutdownNow();
+      Debug.set( debug );
+    }
+    double secs = (System.nanoTime() - start) / 1e9;
+    Debug.trace( "FrameExporter: %d frames in %.1fs, %.1f frames/s",
+                 written, secs, written / secs );
+    return written;
+  }
+
+  /**
+   * Draw the next frame and pass it to the encoders, first
+   *  writing the oldest frame if too many are waiting
+   */
+  private void submit() throws IOException, InterruptedException
+  {
+    if ( pending.size() >= maxPending ) writeOldest();
+    BufferedImage image = free.take();
+    Graphics2D g = image.createGraphics();
+    renderer.draw( g );
+    g.dispose();
+    pending.add( encoders.submit( () -> {
+      try
+      {
+        return dir != null ? png( image ) : rgb( image );
+      } finally
+      {
+        free.add( image );
+      }
+    } ) );
+  }
+
+  /**
+   * Wait for the oldest frame to be encoded and write it
+   */
+  private void writeOldest() throws IOException, InterruptedException
+  {
+    byte[] frame;
+    try
+    {
+      frame = pending.remove().get();
+    } catch (ExecutionException e)
+    {
+      throw new IOException( "Cannot encode frame " + written, e.getCause() );
+    }
+    if ( dir != null )
+      Files.write( dir.resolve( String.format( "frame%06d.png", written ) ), frame );
+    else
+      raw.write( frame );
+    written++;
+  }
+
+  private static byte[] png( BufferedImage image ) throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream( 64 * 1024 );
+    ImageIO.write( image, "png", out );
+    return out.toByteArray();
+  }
+
+  private byte[] rgb( BufferedImage image )
+  {
+    int[]  pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    byte[] frame  = new byte[width * height * 3];
+    for ( int i = 0, j = 0; i < pixels.length; i++ )
+    {
+      int p = pixels[i];
+      frame[j++] = (byte) (p >> 16); frame[j++] = (byte) (p >> 8); frame[j++] = (byte) p;
+    }
+    return frame;
+  }
+}
@@ -0,0 +1,95 @@
+/**
+ * Watch how long each frame takes to draw and cut back on
+ *  drawing when frames are over budget.
+ * The model keeps ticking in its own thread, so skipping frames
+ *  does not change the speed of the game, only how often it is shown.
+ * Only the frames View's refresh timer asks for during play may be
+ *  skipped, the next tick of the timer shows the game again. A redraw
+ *  for anything else, such as the pause, result or start screen, may
+ *  not be followed by another, so it is always shown.
+ * Quality levels
+ *  FULL      Draw everything every frame
+ *  NO_HUD    Only refresh the score / fps text every few frames
+ *  NO_BG     Also fill the background rather than drawing the image
+ */
+class FrameGovernor
+{
+  public static final int FULL   = 0;
+  public static final int NO_HUD = 1;
+  public static final int NO_BG  = 2;
+
+  private static final String[] NAMES = { "FULL", "NO_HUD", "NO_BG" };
+
+  private static final long BUDGET_NS   = 16_000_000; // ~60Hz frame
+  private static final int  DEGRADE_AFTER = 10;       // Frames over budget
+  private static final int  RECOVER_AFTER = 120;      // Frames with headroom
+
+  private long avgCost   = 0;     // Smoothed frame cost (ns)
+  private int  level     = FULL;  // Current quality level
+  private int  overRun   = 0;     // Consecutive frames over budget
+  private int  underRun  = 0;     // Consecutive frames with headroom
+  private long holdUntil = 0;     // Don't present before this time (ns)
+  private long skipped   = 0;     // Frames skipped in total
+
+  /**
+   * Record the cost of drawing the last frame
+   * @param costNs Time taken to draw the frame in nanoseconds
+   * @param endNs  System.nanoTime() when the frame was finished
+   */
+  public synchronized void frameDrawn( long costNs, long endNs )
+  {
+    avgCost = avgCost == 0 ? costNs : avgCost + (costNs - avgCost) / 8;
+
+    // Skip enough frames to pay back a slow frame
+    if ( costNs > BUDGET_NS )
+      holdUntil = endNs + Math.min( costNs, 4 * BUDGET_NS );
+
+    if ( avgCost > BUDGET_NS )
+    {
+      underRun = 0;
+      if ( ++overRun >= DEGRADE_AFTER && level < NO_BG )
+      {
+        level++; overRun = 0;
+        Debug.trace( "FrameGovernor: quality = %s", NAMES[level] );
+      }
+    } else if ( avgCost < BUDGET_NS / 2 )
+    {
+      overRun = 0;
+      if ( ++underRun >= RECOVER_AFTER && level > FULL )
+      {
+        level--; underRun = 0;
+        Debug.trace( "FrameGovernor: quality = %s", NAMES[level] );
+      }
+    } else {
+      overRun = 0; underRun = 0;
+    }
+  }
+
+  /**
+   * Should the next frame be shown, or skipped to catch up.
+   *  Only ask for frames drawn by the refresh timer during play
+   * @param nowNs System.nanoTime() now
+   * @return true if the frame should be drawn
+   */
+  public synchronized boolean shouldPresent( long nowNs )
+  {
+    if ( nowNs - holdUntil < 0 ) { skipped++; return false; }
+    return true;
+  }
+
+  /**
+   * Current quality level
+   * @return FULL, NO_HUD or NO_BG
+   */
+  public synchronized int getLevel()  { return level; }
+
+  /**
+   * Describe the state of the governor for the on screen text
+   * @return Text such as "FULL 3.2ms skip=0"
+   */
+  public synchronized String describe()
+  {
+    return String.format( "%s %4.1fms skip=%d",
+                          NAMES[level], avgCost / 1_000_000.0, skipped );
+  }
+}
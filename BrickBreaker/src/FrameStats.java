@@ -0,0 +1,65 @@
+/**
+ * Histogram of frame times, in 0.1ms buckets up to 100ms.
+ *  Recording a frame is cheap and does not allocate, so it can be
+ *  left running for hours.
+ */
+class FrameStats
+{
+  private static final int BUCKETS   = 1000;      // 0.0ms .. 99.9ms
+  private static final long BUCKET_NS = 100_000;  // 0.1ms
+
+  private final long[] counts = new long[BUCKETS + 1]; // Last is overflow
+  private long frames = 0;
+  private long maxNs  = 0;
+
+  /**
+   * Record the time taken by one frame
+   * @param ns Time taken in nanoseconds
+   */
+  public synchronized void record( long ns )
+  {
+    int bucket = (int) Math.min( BUCKETS, Math.max( 0, ns / BUCKET_NS ) );
+    counts[bucket]++;
+    frames++;
+    if ( ns > maxNs ) maxNs = ns;
+  }
+
+  /**
+   * Number of frames recorded since the last reset
+   * @return frame count
+   */
+  public synchronized long getFrames()  { return frames; }
+
+  /**
+   * Frame time at the given percentile
+   * @param p Percentile 0.0 .. 100.0
+   * @return Upper bound of the bucket in milliseconds
+   */
+  public synchronized double percentile( double p )
+  {
+    if ( frames == 0 ) return 0.0;
+    long want = (long) Math.ceil( frames * p / 100.0 );
+    long seen = 0;
+    for ( int i = 0; i < BUCKETS; i++ )
+    {
+      seen += counts[i];
+      if ( seen >= Math.max( 1, want ) ) return (i + 1) * BUCKET_NS / 1_000_000.0;
+    }
+    return maxNs / 1_000_000.0;
+  }
+
+  /**
+   * Slowest frame since the last reset
+   * @return time in milliseconds
+   */
+  public synchronized double max()      { return maxNs / 1_000_000.0; }
+
+  /**
+   * Forget all recorded frames
+   */
+  public synchronized void reset()
+  {
+    java.util.Arrays.fill( counts, 0 );
+    frames = 0; maxNs = 0;
+  }
+}
@@ -0,0 +1,35 @@
+/**
+ * Kinds of event published by the game as it is played.
+ *  Each event also carries an x,y position and an int value,
+ *  whose meaning depends on the kind of event.
+ */
+public final class GameEvent
+{
+  public static final int LEVEL_START     = 0; // value = level number
+  public static final int BRICK_HIT       = 1; // x,y = brick centre, value = brick index
+  public static final int BRICK_DESTROYED = 2; // x,y = brick centre, value = brick index
+  public static final int LIFE_LOST       = 3; // x,y = ball, value = lives left
+  public static final int LEVEL_COMPLETE  = 4; // value = score
+  public static final int GAME_OVER       = 5; // value = score
+  public static final int BAT_HIT         = 6; // x,y = ball centre
+  public static final int EXPLOSION       = 7; // x,y = first brick's centre, value = bricks destroyed
+  public static final int POWER_UP        = 8; // x,y = power up centre, value = kind caught
+  public static final int POWER_UP_END    = 9; // value = kind that ran out
+
+  private static final String[] NAMES =
+    { "LEVEL_START", "BRICK_HIT", "BRICK_DESTROYED",
+      "LIFE_LOST", "LEVEL_COMPLETE", "GAME_OVER", "BAT_HIT", "EXPLOSION",
+      "POWER_UP", "POWER_UP_END" };
+
+  private GameEvent() {}
+
+  /**
+   * Name of an event type for debug output
+   * @param type The event type
+   * @return The name
+   */
+  public static String name( int type )
+  {
+    return type >= 0 && type < NAMES.length ? NAMES[type] : "EVENT_" + type;
+  }
+}
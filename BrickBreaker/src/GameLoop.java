@@ -0,0 +1,195 @@
+/**
+ * The one thread that runs the game, for the life of the program.
+ *  Each game (from ENTER to level complete or game over) is a session
+ *  run by this thread, rather than a new thread per game.
+ * States
+ *  IDLE      No session, the thread waits
+ *  RUNNING   The session is stepped, one tick per step
+ *  PAUSED    The session is kept but the thread waits
+ *  SHUTDOWN  The thread has been told to finish, can not restart
+ * All state is guarded by this object's lock, so changes are seen
+ *  by the loop at the next step. stop() and start() wait for the
+ *  old session to end before returning, so two sessions never run
+ *  at once.
+ */
+public class GameLoop
+{
+  /**
+   * A game run by the loop
+   */
+  public interface Session
+  {
+    /**
+     * Called once in the loop thread before the first step
+     * @return false if there is nothing to run
+     */
+    boolean begin();
+
+    /**
+     * Do one tick of the game
+     * @return false when the game has finished
+     * @throws InterruptedException if interrupted while sleeping
+     */
+    boolean step() throws InterruptedException;
+  }
+
+  private enum State { IDLE, RUNNING, PAUSED, SHUTDOWN }
+
+  private final String name;
+  private State   state     = State.IDLE;
+  private Session session   = null;     // Session to run
+  private boolean inSession = false;    // Loop is running a session
+  private Thread  thread    = null;     // Created on first start
+
+  /**
+   * @param name Name of the loop thread
+   */
+  public GameLoop( String name )
+  {
+    this.name = name;
+  }
+
+  /**
+   * Run a new session, ending any session already running
+   * @param s The session
+   */
+  public synchronized void start( Session s )
+  {
+    if ( state == State.SHUTDOWN )
+      throw new IllegalStateException( "GameLoop " + name + " has been shut down" );
+    endSession();
+    session = s;
+    state   = State.RUNNING;
+    if ( thread == null )
+    {
+      thread = new Thread( this::run, name );
+      thread.setDaemon(true);   // So may die when program exits
+      thread.start();
+    }
+    notifyAll();
+  }
+
+  /**
+   * End the current session, waiting for its last step to finish.
+   *  The loop thread stays, ready for the next session
+   */
+  public synchronized void stop()
+  {
+    if ( state != State.SHUTDOWN ) endSession();
+  }
+
+  /**
+   * Hold the current session, the loop thread waits
+   */
+  public synchronized void pause()
+  {
+    if ( state == State.RUNNING ) state = State.PAUSED;
+  }
+
+  /**
+   * Carry on with a paused session
+   */
+  public synchronized void resume()
+  {
+    if ( state == State.PAUSED ) { state = State.RUNNING; notifyAll(); }
+  }
+
+  /**
+   * Is the current session paused
+   * @return true if paused
+   */
+  public synchronized boolean isPaused()  { return state == State.PAUSED; }
+
+  /**
+   * End any session and the loop thread, waiting for it to finish
+   * @param waitMs Longest time to wait for the thread
+   */
+  public void shutdown( long waitMs )
+  {
+    Thread t;
+    synchronized ( this )
+    {
+      endSession();
+      state = State.SHUTDOWN;
+      notifyAll();
+      t = thread;
+    }
+    if ( t != null && t != Thread.currentThread() )
+    {
+      try { t.join( waitMs ); }
+      catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+  }
+
+  /**
+   * Clear the session and wait until the loop has left it,
+   *  unless called from the loop itself. Lock must be held
+   */
+  private void endSession()
+  {
+    session = null;
+    if ( state != State.SHUTDOWN ) state = State.IDLE;
+    notifyAll();
+    if ( Thread.currentThread() == thread ) return;
+    boolean interrupted = false;
+    while ( inSession )
+    {
+      try { wait(); }
+      catch (InterruptedException e) { interrupted = true; }
+    }
+    if ( interrupted ) Thread.currentThread().interrupt();
+  }
+
+  private void run()
+  {
+    while ( true )
+    {
+      Session s;
+      synchronized ( this )
+      {
+        try
+        {
+          while ( state != State.RUNNING || session == null )
+          {
+            if ( state == State.SHUTDOWN ) return;
+            wait();
+          }
+        } catch (InterruptedException e)
+        {
+          continue;                          // Look at the state again
+        }
+        s = session;
+        inSession = true;
+      }
+
+      try
+      {
+        if ( s.begin() )
+          while ( keepGoing( s ) && s.step() ) { /* Next tick */ }
+      } catch (InterruptedException e)
+      {
+        Thread.interrupted();                // Session ends, loop carries on
+      } catch (Exception e)
+      {
+        Debug.error("GameLoop.run - Error\n%s", e.getMessage() );
+      } finally
+      {
+        synchronized ( this )
+        {
+          inSession = false;
+          if ( session == s ) { session = null; state = State.IDLE; }
+          notifyAll();
+        }
+      }
+    }
+  }
+
+  /**
+   * Wait while paused, then say if the session should carry on
+   */
+  private synchronized boolean keepGoing( Session s ) throws InterruptedException
+  {
+    while ( state == State.PAUSED && session == s ) wait();
+    return state == State.RUNNING && session == s;
+  }
+}
@@ -10,12 +10,16 @@ public class GameObj
   private boolean canSee  = true; // Can see
   private float topX   = 0.0f; // Top left corner X
   private float topY   = 0.0f; // Top left corner Y
+  private float prevX  = 0.0f; // Top left corner X at previous tick
+  private float prevY  = 0.0f; // Top left corner Y at previous tick
   private float width  = 0.0f; // Width of object
   private float height = 0.0f; // Height of object
   private Colour colour;       // Colour of object
   private int   dirX   = 1;    // Direction X (1 or -1)
   private int   dirY   = 1;    // Direction Y (1 or -1)
   private int   hitCount = 0;  // How many times a brick has been hit by the ball
+  private CollisionMask mask = null; // Solid pixels, null if a solid rectangle
+  private boolean explosive = false; // Brick destroys its neighbours when destroyed
 
   /** 
    * Constructor for a game object (x,y width, height, colour)
@@ -29,6 +33,7 @@ public class GameObj
                 float widthIs, float heightIs, Colour c )
   {
     topX   = x;       topY = y;
+    prevX  = x;       prevY = y;
     width  = widthIs; height = heightIs; 
     colour = c;
   }
@@ -62,12 +67,54 @@ public class GameObj
    */  
 
   public float getY()       { return topY; }
+
+  /**
+   * The X co-ordinate blended between the previous and current tick
+   *  @param alpha 0.0 = previous tick, 1.0 = current tick
+   *  @return interpolated x co-ordinate of the game Object
+   */
+  public float getX( float alpha ) { return prevX + (topX - prevX) * alpha; }
+
+  /**
+   * The Y co-ordinate blended between the previous and current tick
+   *  @param alpha 0.0 = previous tick, 1.0 = current tick
+   *  @return interpolated y co-ordinate of the game Object
+   */
+  public float getY( float alpha ) { return prevY + (topY - prevY) * alpha; }
+
+  /**
+   * Move the object to a position, remembering where it was
+   *  as the previous tick position
+   * @param x co-ordinate of the top left corner
+   * @param y co-ordinate of the top left corner
+   */
+  public void setPosition( float x, float y )
+  {
+    prevX = topX; prevY = topY;
+    topX  = x;    topY  = y;
+  }
+
+  /**
+   * Remember the current position as the previous tick position.
+   *  Called at the start of each simulation tick, and after a jump
+   *  so the jump is not drawn as movement
+   */
+  public void savePosition()
+  {
+    prevX = topX; prevY = topY;
+  }
   /**
    * The width of the game object
    *  @return The width of the game Object 
    */ 
 
   public float getWidth()   { return width; }
+
+  /**
+   * Change the width of the object, the left edge stays put
+   *  @param w The new width
+   */
+  public void setWidth( float w )  { width = w; }
   /**
    * The height of the game object
    *  @return The height of the game Object 
@@ -111,6 +158,19 @@ public class GameObj
     topY += units * dirY;
   }
   
+  /**
+   * Current direction of travel in the X direction
+   * @return 1 or -1
+   */
+  public int getDirX()      { return dirX; }
+
+  /**
+   * Current direction of travel in the Y direction
+   *  moveY(-units) moves up the screen when this is 1
+   * @return 1 or -1
+   */
+  public int getDirY()      { return dirY; }
+
   /**
    * Change direction of future moves in the X direction 
    */
@@ -129,7 +189,7 @@ public class GameObj
   
   /**
    * Detect a collision between two GameObjects 
-   *  Would be good to know where the object is hit
+   *  Use collide() to know where the object is hit
    *  @param obj Game object to see if 'hit' by 
    *  @return collision True/ False
    */
@@ -142,18 +202,87 @@ public class GameObj
                topY+height <= obj.topY );
   }
   
+  /**
+   * Detect a collision between two GameObjects and where it happened.
+   *  The side hit is the one with the least overlap.
+   *  @param obj Game object to see if 'hit' by
+   *  @param result Filled in with the side of obj hit and the overlap
+   *  @return collision True/ False
+   */
+  public boolean collide( GameObj obj, Collision result )
+  {
+    float overlapX = Math.min( topX+width,  obj.topX+obj.width  ) - Math.max( topX, obj.topX );
+    float overlapY = Math.min( topY+height, obj.topY+obj.height ) - Math.max( topY, obj.topY );
+
+    if ( overlapX <= 0 || overlapY <= 0 ||
+         ( (mask != null || obj.mask != null) &&              // Check pixels
+           !CollisionMask.overlaps( this, mask, obj, obj.mask ) ) )
+    {
+      result.set( false, 0, 0, 0 );
+      return false;
+    }
+
+    // Compare centres to find which side of obj was hit
+    if ( overlapX < overlapY )
+    {
+      float side = (topX+width/2 < obj.topX+obj.width/2) ? -1 : 1;
+      result.set( true, side, 0, overlapX );
+    } else {
+      float side = (topY+height/2 < obj.topY+obj.height/2) ? -1 : 1;
+      result.set( true, 0, side, overlapY );
+    }
+    return true;
+  }
+
+  /**
+   * Set which pixels of the object are solid for collide()
+   *  @param mask The mask, null for a solid rectangle
+   */
+  public void setMask( CollisionMask mask )
+  {
+    this.mask = mask;
+  }
+
+  /**
+   * Move the object out of an object it has collided with
+   *  @param c The collision, from collide()
+   */
+  public void separate( Collision c )
+  {
+    topX += c.getNormalX() * c.getDepth();
+    topY += c.getNormalY() * c.getDepth();
+  }
+
   // Get hit count for brick colour
   public int getHitCount()
   {
 	  return hitCount;
   }
   
+  // Set hit count, when copying the state of a brick
+  public void setHitCount(int count)
+  {
+	  hitCount = count;
+  }
+  
   // This is to increment hit count
   public void incrementHitCount()
   {
 	  hitCount++;
   }
   
+  // Brick that destroys its neighbours when destroyed
+  public boolean isExplosive()
+  {
+	  return explosive;
+  }
+  
+  // Make a brick explosive or not
+  public void setExplosive(boolean state)
+  {
+	  explosive = state;
+  }
+  
   // Change brick colour because it has been hit
   public void setColour(Colour c) 
   {
@@ -0,0 +1,482 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Draws the game of breakout into any Graphics2D.
+ *  The View draws with it on screen, FrameExporter draws with it
+ *  into off screen images, so both show exactly the same picture.
+ * Takes a copy of what it draws from the model in update().
+ *  Uses Graphics2D would need to be re-implemented for Android.
+ */
+public class GameRenderer
+{
+  private GameObj   bat;            // The bat
+  private GameObj   ball;           // The ball
+  private List<GameObj> bricks;     // The bricks
+  private List<PowerUp> drops;      // Falling power ups
+  private int       score;          // The score
+  private int       frames = 0;     // Frames output
+  private int       playerLives;
+  private int       gameState;
+  private int       levelNum;
+  private boolean   paused = false; // Game paused
+  private volatile long lastTick;   // Time of last model tick (ns), set by the game thread
+  private volatile long tickPeriod; // Time between model ticks (ns)
+  private float     fixedDt = 0;    // Seconds per frame off screen, 0 for real time
+  private int       fixedQuality = -1; // Quality to draw at, -1 to let the governor decide
+
+  private static final int HUD_EVERY  = 10; // Frames between HUD text when degraded
+  private static final Font HUD_FONT  = new Font("Monospaced", Font.BOLD, 24);
+  private static final Font TABLE_FONT = new Font("Monospaced", Font.BOLD, 20);
+  private static final int  TABLE_ROWS = 5; // High scores shown
+  private static final Font RESULT_FONT = new Font("Monospaced", Font.BOLD, 50);
+  private static final Color EXPLOSIVE  = new Color(255, 120, 0, 110); // Tint of explosive bricks
+  private static final Font  DROP_FONT  = new Font("Monospaced", Font.BOLD, 14);
+  private static final Color[] DROP_COLOURS =     // By power up kind
+    { new Color(80, 160, 255), new Color(80, 220, 120), new Color(255, 80, 80), new Color(255, 200, 0) };
+
+  private final FrameGovernor governor = new FrameGovernor();
+  private final Map<String,Image> sprites = new HashMap<>(); // Decoded images
+  private HighScoreStore highScores = null; // Best scores, if kept
+  private BufferedImage staticImage;        // Last static screen drawn
+  private int    staticState = -1, staticLevel, staticScore; // What it shows
+  private Object staticBoard;
+  private final ParticleSystem particles = new ParticleSystem( 65536, 4000 );
+  private Image[]   particleSprites;        // Scaled to particle size
+  private long      lastParticles = 0;      // Time of last particle update (ns)
+  private String hudText = "";      // Last score / fps text drawn
+  private int    hudAge  = 0;       // Frames since HUD text built
+  private volatile boolean hudDirty = true; // Score or lives changed
+
+  public final int width;   // Size of picture Width
+  public final int height;  // Size of picture Height
+
+  /**
+   * @param width  Width of the picture in pixels
+   * @param height Height of the picture in pixels
+   */
+  public GameRenderer( int width, int height )
+  {
+    this.width = width; this.height = height;
+    Timer.startTimer();
+  }
+
+  /**
+   * Take a copy of the state of the model to draw
+   * @param model The model
+   */
+  public void update( Model model )
+  {
+    ball    = model.getBall();              // Ball
+    bricks  = model.getBricks();            // Bricks
+    drops   = model.getDrops();             // Power ups
+    bat     = model.getBat();               // Bat
+    score   = model.getScore();             // Score
+    playerLives = model.getPlayerLives();   // Player Lives
+    gameState = model.getGameState();       // Game State
+    levelNum = model.getLevelNum();
+    lastTick   = model.getLastTick();       // When the model last moved
+    tickPeriod = model.getTickPeriod();
+    paused     = model.isPaused();
+  }
+
+  /**
+   * Draw frames a fixed time apart, rather than by the real clock,
+   *  so the same game always gives the same pictures.
+   *  Moving objects are drawn where they are at the last tick,
+   *  particles move on by the frame time and the HUD leaves out
+   *  the frame rate and quality
+   * @param seconds Time between frames, 0 to go back to the real clock
+   */
+  public void setFixedFrameTime( float seconds ) { fixedDt = seconds; }
+
+  /**
+   * Always draw at one quality level, rather than as the governor decides
+   * @param quality FrameGovernor.FULL, NO_HUD or NO_BG, -1 for the governor
+   */
+  public void setQuality( int quality ) { fixedQuality = quality; }
+
+  /**
+   * Quality to draw this frame at
+   */
+  private int quality()
+  {
+    if ( fixedQuality >= 0 ) return fixedQuality;
+    return fixedDt > 0 ? FrameGovernor.FULL : governor.getLevel();
+  }
+
+  /**
+   * Is there anything to draw yet
+   * @return true once the model has been copied
+   */
+  public boolean isReady()              { return bricks != null; }
+
+  public int getGameState()             { return gameState; }
+
+  public boolean isPaused()             { return paused; }
+
+  /**
+   * Decides how much to draw when frames are slow
+   * @return The frame governor
+   */
+  public FrameGovernor getGovernor()    { return governor; }
+
+  /**
+   * The particle system drawn over the game
+   * @return The particle system
+   */
+  public ParticleSystem getParticles()  { return particles; }
+
+  /**
+   * Show the best scores on the result screens
+   * @param store The high score store, null for none
+   */
+  public void setHighScores( HighScoreStore store )  { highScores = store; }
+
+  /**
+   * Told about game events, in the HUD consumer thread.
+   *  Anything that changes the score or lives means the
+   *  HUD text must be rebuilt on the next frame
+   */
+  public void onGameEvent( int type, float x, float y, int value )
+  {
+    switch ( type )
+    {
+      case GameEvent.BRICK_HIT:
+      case GameEvent.BRICK_DESTROYED:
+      case GameEvent.LIFE_LOST:
+      case GameEvent.LEVEL_START:
+      case GameEvent.EXPLOSION:
+      case GameEvent.POWER_UP:
+        hudDirty = true;
+        break;
+    }
+  }
+
+  /**
+   * Show that the game is paused, over the frozen game
+   * @param g Graphics context to use
+   */
+  private void drawPaused( Graphics2D g )
+  {
+    g.setFont( RESULT_FONT );
+    g.setPaint( Color.white );
+    String text = "PAUSED";
+    FontMetrics fm = g.getFontMetrics( RESULT_FONT );
+    g.drawString( text, width/2 - fm.stringWidth(text)/2, height/2 );
+  }
+
+  /**
+   * An image from the assets, only decoded the first time
+   * @param name File name of the asset
+   * @return The image or null if it cannot be read
+   */
+  private Image sprite( String name )
+  {
+    Image image = sprites.get( name );
+    if ( image == null && ! sprites.containsKey( name ) )
+    {
+      image = Assets.image( name );
+      sprites.put( name, image );
+    }
+    return image;
+  }
+
+  /**
+   * How far between the previous and current model tick to draw
+   *  moving objects, based on the time since the last tick
+   * @return 0.0 (previous tick) to 1.0 (current tick)
+   */
+  private float tickAlpha()
+  {
+    if ( fixedDt > 0 || tickPeriod <= 0 ) return 1.0f;
+    float alpha = (System.nanoTime() - lastTick) / (float) tickPeriod;
+    return Math.max( 0.0f, Math.min( 1.0f, alpha ) );
+  }
+
+  public void drawStartScreen(Graphics2D g) {
+	  g.drawImage(sprite("start.png"), 0, 0, width, height, null);
+  }
+
+  public void drawLevelText(Graphics2D g) {
+      g.drawImage(sprite("level"+ levelNum +"Text.png"), 0, Main.H/4, Main.W, Main.H, null);
+  }
+  
+  public void drawGameOverScreen(Graphics2D g) {
+	  g.drawImage(sprite("gameOver.png"), 0, 0, width, height, null);
+
+      g.setFont( RESULT_FONT );
+      
+      String scoreNow = Integer.toString(score);
+	  
+	  g.setPaint(Color.red);
+      g.drawString( scoreNow, width/2 + width/6 , height/2 + 50);
+      drawLeaderboard(g);
+  }
+  
+  public void drawWinScreen(Graphics2D g) {
+
+      if (levelNum < Model.LAST_LEVEL){
+          g.drawImage(sprite("level"+ levelNum +"Complete.png"), 0, 0, width, height, null);
+      } else {
+          g.drawImage(sprite("gameComplete.png"), 0, 0, width, height, null);
+      }
+
+      g.setFont( RESULT_FONT );
+
+      String scoreNow = Integer.toString(score);
+
+      g.setPaint(Color.red);
+      g.drawString( scoreNow, width/2 + width/6 , height/2 + 50);
+      drawLeaderboard(g);
+
+  }
+
+  /**
+   * Draw a start, level complete or game over screen.
+   *  Nothing moves on these screens, so the screen is drawn once into
+   *  an image and the image reused until what it shows changes
+   * @param g Graphics context to use
+   */
+  private void drawStaticScreen(Graphics2D g) {
+      Object board = highScores == null ? null : highScores.getLeaderboard();
+      if (staticImage == null || staticState != gameState || staticLevel != levelNum ||
+          staticScore != score || staticBoard != board) {
+          if (staticImage == null)
+              staticImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+          Graphics2D sg = staticImage.createGraphics();
+          switch (gameState) {
+              case 0: drawStartScreen(sg);    break;
+              case 2: drawWinScreen(sg);      break;
+              case 3: drawGameOverScreen(sg); break;
+          }
+          sg.dispose();
+          staticState = gameState; staticLevel = levelNum;
+          staticScore = score;     staticBoard = board;
+      }
+      g.drawImage(staticImage, 0, 0, null);
+  }
+
+  /**
+   * Show the best scores under the player's score.
+   *  Only reads the tables already held in memory, no file access
+   * @param g Graphics context to use
+   */
+  private void drawLeaderboard(Graphics2D g) {
+      if (highScores == null) return;
+
+      g.setFont( TABLE_FONT );
+      g.setPaint( Color.white );
+      int y = height/2 + 110;
+      HighScoreStore.Score best = highScores.getLevelBest(levelNum);
+      if (best != null) {
+          g.drawString( String.format("Level %d best %6d", levelNum, best.score), width/4, y );
+          y += 30;
+      }
+
+      List<HighScoreStore.Score> table = highScores.getLeaderboard();
+      for (int i = 0; i < table.size() && i < TABLE_ROWS; i++) {
+          HighScoreStore.Score s = table.get(i);
+          g.drawString( String.format("%d. %6d  level %d", i + 1, s.score, s.level), width/4, y );
+          y += 25;
+      }
+  }
+  
+  /**
+   *  Code called to draw the current state of the game
+   *   Uses draw:       Draw a shape
+   *        fill:       Fill the shape
+   *        setPaint:   Colour used
+   *        drawString: Write string on display
+   *  @param g Graphics context to use
+   */
+  public void draw( Graphics2D g )
+  {
+    final int  RESET_AFTER = 200; // Movements
+    frames++;
+    Telemetry.FrameEvent frame = new Telemetry.FrameEvent();
+    boolean timing = frame.isEnabled();   // Time each layer
+    frame.begin();
+    synchronized( Model.class )   // Make thread safe
+    {
+      frame.gameState = gameState;
+    	
+      switch (gameState) {
+      case 0:
+      case 2:
+      case 3:
+    	  drawStaticScreen(g);
+    	  break;
+      case 1:
+          int quality = quality();
+          frame.quality = quality;
+          long t = timing ? System.nanoTime() : 0;
+
+    	// Draw the background 
+          if ( quality >= FrameGovernor.NO_BG )
+          {
+            g.setPaint( Color.black );
+            g.fillRect( 0, 0, width, height );
+          } else {
+            g.drawImage( sprite("BG.png"), 0, 0, width, height, null );
+          }
+          if ( timing ) { long n = System.nanoTime(); frame.background = n - t; t = n; }
+          
+          g.setFont( HUD_FONT );
+          
+          float alpha = tickAlpha();
+          displayBall( g, ball, alpha );   // Display the Ball
+          displayBat( g, bat, alpha );     // Display the Bat
+          if ( timing ) { long n = System.nanoTime(); frame.sprites = n - t; t = n; }
+
+          // *[4]****************************************************[4]*
+          // * Display the bricks that make up the game                 *
+          // * Fill in code to display bricks                           *
+          // * Remember only a visible brick is to be displayed         *
+          // ************************************************************
+          
+          for (GameObj brick : bricks)
+          {  
+        	  if (brick.isVisible())
+        	  {
+        		  displayBrick(g, brick);
+        	  }
+          }
+          for (PowerUp p : drops)
+          {
+        	  displayDrop(g, p, alpha);
+          }
+          if ( timing ) { long n = System.nanoTime(); frame.bricks = n - t; t = n; }
+          
+          // Display lives
+          Image lifeImage = sprite("life.png");
+          for(int x = 0; x < playerLives; x++) {
+              g.drawImage(lifeImage, Main.W - x*30 - 40, Main.H - 100, 30, 30, null);
+          }
+          
+          // Display state of game, less often when frames are slow
+          if ( quality == FrameGovernor.FULL || hudDirty || ++hudAge >= HUD_EVERY )
+          {
+            hudDirty = false;
+            if ( fixedDt > 0 )                 // Same text every run
+            {
+              hudText = String.format( "BreakOut: Score = [%6d]", score );
+            } else {
+              String fmt = "BreakOut: Score = [%6d] fps=%5.1f %s";
+              hudText = String.format(fmt, score, frames/(Timer.timeTaken()/1000.0),
+                                      governor.describe() );
+            }
+            hudAge  = 0;
+          }
+          g.setPaint(Color.red);
+          FontMetrics fm = g.getFontMetrics( HUD_FONT );
+          
+          if ( frames > RESET_AFTER ) 
+            { frames = 0; Timer.startTimer(); }
+          g.drawString( hudText, width /2-fm.stringWidth(hudText)/2, 80 );
+          if ( timing ) frame.hud = System.nanoTime() - t;
+
+          break;
+          
+	    }
+      if ( gameState == 1 && paused ) drawPaused(g);
+	  }
+
+    if ( gameState == 1 )                      // Outside the model lock
+    {
+      long t = timing ? System.nanoTime() : 0;
+      drawParticles( g );
+      if ( timing ) frame.particles = System.nanoTime() - t;
+    }
+    frame.commit();
+  }
+
+  /**
+   * Move the particles on to now and draw them in one pass.
+   *  Fewer new particles are allowed when frames are slow
+   * @param g Graphics context to use
+   */
+  private void drawParticles( Graphics2D g )
+  {
+    if ( particleSprites == null )
+    {
+      String[] names = { "brick0.png", "brick1.png", "ball.png" };
+      particleSprites = new Image[names.length];
+      for ( int i = 0; i < names.length; i++ )
+        particleSprites[i] = scaled( sprite(names[i]), ParticleSystem.SIZE );
+    }
+
+    float dt;
+    if ( fixedDt > 0 )
+    {
+      dt = fixedDt;
+    } else {
+      long now = System.nanoTime();
+      dt = lastParticles == 0 ? 0 : Math.min( 0.05f, (now - lastParticles) / 1e9f );
+      lastParticles = now;
+    }
+
+    int quality = quality();
+    particles.setMaxEmit( quality == FrameGovernor.FULL ? 4000 :
+                          quality == FrameGovernor.NO_HUD ? 1000 : 250 );
+    particles.update( dt );
+    particles.draw( g, particleSprites );
+  }
+
+  /**
+   * A copy of an image scaled once to a square size
+   * @param image The image
+   * @param size  Width and height wanted
+   * @return The scaled copy
+   */
+  private Image scaled( Image image, int size )
+  {
+    BufferedImage copy = new BufferedImage( size, size, BufferedImage.TYPE_INT_ARGB );
+    Graphics2D g = copy.createGraphics();
+    g.drawImage( image, 0, 0, size, size, null );
+    g.dispose();
+    return copy;
+  }
+  
+  private void displayBat( Graphics2D g, GameObj go, float alpha )
+  {
+	  Image batImage = sprite("bat.png");
+	  g.drawImage(batImage, (int) go.getX(alpha), (int) go.getY(alpha), (int) go.getWidth(), (int) go.getHeight(), null);
+  }
+  
+  private void displayBrick(Graphics2D g, GameObj go)
+  {
+	  Image brickImg = sprite("brick"+go.getHitCount()+".png");
+	  g.drawImage(brickImg, (int) go.getX(), (int) go.getY(), (int) go.getWidth(), (int) go.getHeight(), null);
+	  if (go.isExplosive()) {
+		  g.setPaint(EXPLOSIVE);
+		  g.fillRect((int) go.getX(), (int) go.getY(), (int) go.getWidth(), (int) go.getHeight());
+	  }
+  }
+  
+  private void displayDrop(Graphics2D g, PowerUp p, float alpha)
+  {
+	  int x = (int) p.getX(alpha), y = (int) p.getY(alpha);
+	  g.setPaint(DROP_COLOURS[p.getKind()]);
+	  g.fillRoundRect(x, y, (int) p.getWidth(), (int) p.getHeight(), 8, 8);
+	  g.setPaint(Color.black);
+	  g.setFont(DROP_FONT);
+	  String letter = PowerUp.LETTERS[p.getKind()];
+	  FontMetrics fm = g.getFontMetrics(DROP_FONT);
+	  g.drawString(letter, x + ((int) p.getWidth() - fm.stringWidth(letter))/2,
+	               y + ((int) p.getHeight() + fm.getAscent())/2 - 1);
+  }
+
+  private void displayBall(Graphics2D g, GameObj go, float alpha)
+  {
+	  Image ballImage = sprite("ball.png");
+	  g.drawImage(ballImage, (int) go.getX(alpha), (int) go.getY(alpha), (int) go.getWidth(), (int) go.getHeight(), null);
+  }
+}
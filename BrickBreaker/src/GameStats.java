@@ -0,0 +1,36 @@
+/**
+ * Keeps running totals of what has happened in the game,
+ *  from the game events, and reports them at the end of each level.
+ */
+public class GameStats implements EventBus.Handler
+{
+  private long bricksHit       = 0;
+  private long bricksDestroyed = 0;
+  private long livesLost       = 0;
+  private long levelsComplete  = 0;
+  private long gamesOver       = 0;
+  private long explosions      = 0;
+  private long powerUps        = 0;
+
+  @Override
+  public void onEvent( int type, float x, float y, int value )
+  {
+    switch ( type )
+    {
+      case GameEvent.BRICK_HIT:       bricksHit++;       break;
+      case GameEvent.BRICK_DESTROYED: bricksDestroyed++; break;
+      case GameEvent.LIFE_LOST:       livesLost++;       break;
+      case GameEvent.LEVEL_COMPLETE:  levelsComplete++;  report( type, value ); break;
+      case GameEvent.GAME_OVER:       gamesOver++;       report( type, value ); break;
+      case GameEvent.EXPLOSION:       explosions++; bricksDestroyed += value; break;
+      case GameEvent.POWER_UP:        powerUps++;        break;
+    }
+  }
+
+  private void report( int type, int score )
+  {
+    Debug.trace( "Stats: %s score=%d hits=%d destroyed=%d explosions=%d powerUps=%d livesLost=%d levels=%d games=%d",
+                 GameEvent.name(type), score, bricksHit, bricksDestroyed, explosions, powerUps,
+                 livesLost, levelsComplete, gamesOver );
+  }
+}
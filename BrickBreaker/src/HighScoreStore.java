@@ -0,0 +1,377 @@
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the high scores between games.
+ *  Each result is appended to a log file as a fixed size record with a
+ *  checksum, written through a memory mapping of the file.
+ *  The mapping is forced to disk in batches by a background thread,
+ *  so adding a score never waits for the disk. The thread only
+ *  wakes when there is something to force.
+ * On start up the log is read to rebuild the best K scores and the
+ *  best score made on each level, that is the most gained from the
+ *  start of the level to its end. A record that was only partly written
+ *  when the program died fails its checksum, and the log is treated
+ *  as ending there.
+ * Once the log grows past a limit it is rewritten holding just the
+ *  scores that are still wanted.
+ * Results arrive as game events, in the consumer thread.
+ */
+public class HighScoreStore implements EventBus.Handler
+{
+  public static final int KIND_FINAL = 2;   // Score at the end of a game
+  public static final int KIND_LEVEL = 3;   // Score gained on a level, when complete
+                                            // (1 was the running total, now ignored)
+
+  private static final int  MAGIC       = 0x48534352;   // "HSCR"
+  private static final int  RECORD      = 32;           // Bytes per record
+  private static final int  CHUNK       = 64 * 1024;    // Mapping grows by
+  private static final long COMPACT_AT  = 256 * 1024;   // Log size to compact
+  private static final long FLUSH_MS    = 250;          // Delay to batch forces
+
+  /**
+   * One score in the table
+   */
+  public static final class Score
+  {
+    public final int  level;
+    public final int  score;
+    public final long time;    // When, milliseconds since the epoch
+
+    Score( int level, int score, long time )
+    {
+      this.level = level; this.score = score; this.time = time;
+    }
+  }
+
+  private final Path  file;
+  private final int   topK;
+  private final PriorityQueue<Score> best =               // Lowest score first
+    new PriorityQueue<>( (a, b) -> Integer.compare( a.score, b.score ) );
+  private final Score[] levelBest = new Score[Model.LAST_LEVEL + 1];
+  private final CRC32 crc = new CRC32();
+
+  private FileChannel      channel;
+  private MappedByteBuffer map;
+  private long             end = 0;          // Where the next record goes
+  private boolean          dirty = false;    // Written but not forced
+  private boolean          flushQueued = false; // Force already scheduled
+  private long             compactAt = COMPACT_AT; // Later after a failed compact
+  private int              level = 1;        // Level being played
+  private int              levelStart = 0;   // Score when it started
+
+  private volatile List<Score> leaderboard = Collections.emptyList();
+  private volatile Score[]     levelSnapshot = new Score[Model.LAST_LEVEL + 1];
+  private volatile Runnable    onChange = null;
+
+  private final ScheduledExecutorService flusher =
+    Executors.newSingleThreadScheduledExecutor( r -> {
+      Thread t = new Thread( r, "HighScoreFlush" );
+      t.setDaemon(true);
+      return t;
+    } );
+
+  /**
+   * Open the log, creating it if need be, and read the scores in it
+   * @param file The log file
+   * @param topK Number of best scores to keep
+   * @throws IOException if the log cannot be opened
+   */
+  public HighScoreStore( Path file, int topK ) throws IOException
+  {
+    this.file = file;
+    this.topK = topK;
+    if ( file.getParent() != null ) Files.createDirectories( file.getParent() );
+    open();
+    scan();
+    publish();
+  }
+
+  @Override
+  public void onEvent( int type, float x, float y, int value )
+  {
+    switch ( type )
+    {
+      case GameEvent.LEVEL_START:
+        level = value;
+        if ( level == 1 ) levelStart = 0;    // A new game
+        break;
+      case GameEvent.LEVEL_COMPLETE:
+        add( level, value - levelStart, KIND_LEVEL );
+        if ( level >= Model.LAST_LEVEL ) add( level, value, KIND_FINAL );
+        levelStart = value;
+        break;
+      case GameEvent.GAME_OVER:
+        add( level, value, KIND_FINAL );
+        levelStart = 0;
+        break;
+    }
+  }
+
+  /**
+   * Record a score
+   * @param level Level the score was made on
+   * @param score The score, for KIND_LEVEL only that made on the level
+   * @param kind  KIND_LEVEL or KIND_FINAL
+   */
+  public synchronized void add( int level, int score, int kind )
+  {
+    try
+    {
+      long time = System.currentTimeMillis();
+      if ( map == null ) open();             // Lost in a failed compact
+      if ( end + RECORD > map.capacity() ) remap( end + CHUNK );
+      write( map, (int) end, level, score, kind, time );
+      end += RECORD;
+      dirty = true;
+      if ( !flushQueued )                    // One force for a batch of scores
+      {
+        flushQueued = true;
+        flusher.schedule( this::flush, FLUSH_MS, TimeUnit.MILLISECONDS );
+      }
+      index( level, score, kind, time );
+      if ( end >= compactAt ) compact();
+      publish();
+    } catch (IOException e)
+    {
+      Debug.error("HighScoreStore.add - Error\n%s", e.getMessage() );
+    }
+  }
+
+  /**
+   * The best scores, highest first. Does no I/O
+   * @return Read only list of scores
+   */
+  public List<Score> getLeaderboard()  { return leaderboard; }
+
+  /**
+   * The best score made on a level. Does no I/O
+   * @param level The level
+   * @return The best score or null if none
+   */
+  public Score getLevelBest( int level )
+  {
+    Score[] snap = levelSnapshot;
+    return level >= 0 && level < snap.length ? snap[level] : null;
+  }
+
+  /**
+   * Be told when the scores change, in the thread that changed them
+   * @param onChange Called after each change
+   */
+  public void setOnChange( Runnable onChange ) { this.onChange = onChange; }
+
+  /**
+   * Write any outstanding scores to disk and close the log
+   */
+  public synchronized void close()
+  {
+    flusher.shutdown();
+    try
+    {
+      if ( map == null ) return;
+      if ( dirty ) map.force();
+      channel.truncate( end );
+      channel.close();
+    } catch (IOException e)
+    {
+      Debug.error("HighScoreStore.close - Error\n%s", e.getMessage() );
+    }
+  }
+
+  private synchronized void flush()
+  {
+    flushQueued = false;
+    if ( dirty && map != null && channel.isOpen() ) { map.force(); dirty = false; }
+  }
+
+  private void open() throws IOException
+  {
+    channel = FileChannel.open( file, StandardOpenOption.CREATE,
+                                StandardOpenOption.READ, StandardOpenOption.WRITE );
+    remap( Math.max( channel.size(), CHUNK ) );
+  }
+
+  private void remap( long size ) throws IOException
+  {
+    if ( map != null ) map.force();
+    long rounded = (size + CHUNK - 1) / CHUNK * CHUNK;
+    map = channel.map( FileChannel.MapMode.READ_WRITE, 0, rounded );
+  }
+
+  /**
+   * Read records from the start of the log until one is not valid
+   */
+  private void scan()
+  {
+    ByteBuffer b = map.duplicate();
+    int pos = 0;
+    while ( pos + RECORD <= b.capacity() && b.getInt( pos ) == MAGIC )
+    {
+      if ( checksum( b, pos ) != b.getInt( pos + 24 ) ) break;  // Torn write
+      index( b.getInt( pos + 4 ), b.getInt( pos + 8 ), b.getInt( pos + 12 ),
+             b.getLong( pos + 16 ) );
+      pos += RECORD;
+    }
+    end = pos;
+    Debug.trace( "HighScoreStore: %d records read from %s", pos / RECORD, file );
+  }
+
+  /**
+   * Add a score to the in memory tables
+   */
+  private void index( int level, int score, int kind, long time )
+  {
+    Score s = new Score( level, score, time );
+    if ( kind == KIND_LEVEL && level >= 0 && level < levelBest.length &&
+         ( levelBest[level] == null || score > levelBest[level].score ) )
+      levelBest[level] = s;
+    if ( kind == KIND_FINAL )
+    {
+      best.add( s );
+      if ( best.size() > topK ) best.poll();   // Drop the lowest
+    }
+  }
+
+  /**
+   * Make a new copy of the tables for readers
+   */
+  private void publish()
+  {
+    List<Score> list = new ArrayList<>( best );
+    list.sort( (a, b) -> Integer.compare( b.score, a.score ) );
+    leaderboard   = Collections.unmodifiableList( list );
+    levelSnapshot = levelBest.clone();
+    Runnable r = onChange;
+    if ( r != null ) r.run();
+  }
+
+  /**
+   * Rewrite the log holding only the best scores and the best
+   *  on each level, then swap it in place of the old log
+   */
+  private void compact() throws IOException
+  {
+    List<int[]> keep = new ArrayList<>();
+    List<Long>  when = new ArrayList<>();
+    for ( Score s : best )
+      { keep.add( new int[] { s.level, s.score, KIND_FINAL } ); when.add( s.time ); }
+    for ( Score s : levelBest )
+      if ( s != null )
+        { keep.add( new int[] { s.level, s.score, KIND_LEVEL } ); when.add( s.time ); }
+
+    Path tmp = file.resolveSibling( file.getFileName() + ".tmp" );
+    ByteBuffer b = ByteBuffer.allocate( keep.size() * RECORD );
+    for ( int i = 0; i < keep.size(); i++ )
+    {
+      int[] k = keep.get(i);
+      write( b, i * RECORD, k[0], k[1], k[2], when.get(i) );
+    }
+    try ( FileChannel out = FileChannel.open( tmp, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE ) )
+    {
+      while ( b.hasRemaining() ) out.write( b );
+      out.force( true );
+    }
+
+    // Windows will not replace a file that is open or mapped, so
+    //  close and unmap the log first. If the move fails the old log
+    //  is still there to open again
+    map.force();
+    dirty = false;
+    channel.close();
+    unmap( map );
+    map = null;
+    IOException failed = null;
+    try
+    {
+      Files.move( tmp, file, StandardCopyOption.REPLACE_EXISTING,
+                  StandardCopyOption.ATOMIC_MOVE );
+    } catch (IOException e)
+    {
+      failed = e;                              // Carry on with the old log
+      try { Files.deleteIfExists( tmp ); } catch (IOException e2) { /* Left for next time */ }
+    }
+
+    open();
+    if ( failed != null )
+    {
+      compactAt = end + COMPACT_AT;            // Try again once it has grown as much again
+      throw failed;
+    }
+    end       = (long) keep.size() * RECORD;
+    compactAt = COMPACT_AT;
+    Debug.trace( "HighScoreStore: compacted to %d records", keep.size() );
+  }
+
+  /**
+   * Unmap a mapping now, rather than when it is garbage collected.
+   *  There is no API for this, so use the JDK's own cleaner, which
+   *  moved in Java 9. If it cannot be found the mapping is left for
+   *  the garbage collector, which is fine other than on Windows
+   * @param b The mapping, must not be used again
+   */
+  private static void unmap( MappedByteBuffer b )
+  {
+    try
+    {
+      Class<?> unsafe = Class.forName( "sun.misc.Unsafe" );
+      try
+      {
+        Method clean = unsafe.getMethod( "invokeCleaner", ByteBuffer.class );  // Java 9 on
+        Field theUnsafe = unsafe.getDeclaredField( "theUnsafe" );
+        theUnsafe.setAccessible( true );
+        clean.invoke( theUnsafe.get( null ), b );
+      } catch (NoSuchMethodException e)                                        // Java 8
+      {
+        Method cleaner = b.getClass().getMethod( "cleaner" );
+        cleaner.setAccessible( true );
+        Object c = cleaner.invoke( b );
+        if ( c != null ) c.getClass().getMethod( "clean" ).invoke( c );
+      }
+    } catch (ReflectiveOperationException | RuntimeException e)
+    {
+      Debug.trace( "HighScoreStore: log left mapped, %s", e );
+    }
+  }
+
+  /**
+   * Write one record at a position in a buffer
+   */
+  private void write( ByteBuffer b, int pos, int level, int score, int kind, long time )
+  {
+    b.putInt( pos, MAGIC );
+    b.putInt( pos + 4,  level );
+    b.putInt( pos + 8,  score );
+    b.putInt( pos + 12, kind );
+    b.putLong( pos + 16, time );
+    b.putInt( pos + 24, checksum( b, pos ) );
+    b.putInt( pos + 28, 0 );
+  }
+
+  /**
+   * Checksum of the first 24 bytes of a record
+   */
+  private int checksum( ByteBuffer b, int pos )
+  {
+    crc.reset();
+    for ( int i = 0; i < 24; i++ ) crc.update( b.get( pos + i ) );
+    return (int) crc.getValue();
+  }
+}
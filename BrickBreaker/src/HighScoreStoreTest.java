@@ -0,0 +1,185 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Checks HighScoreStore keeps its scores across a restart, even when
+ *  the last record in the log was only partly written
+ *    java HighScoreStoreTest
+ * Prints each failure and exits with 1 if there were any, so it can
+ *  be run as a check on a machine with no screen.
+ */
+public class HighScoreStoreTest
+{
+  private static final int RECORD = 32;      // Bytes per record in the log
+
+  private static int failures = 0;
+
+  public static void main( String args[] ) throws IOException
+  {
+    Debug.set( false );
+    Path dir = Files.createTempDirectory( "scores" );
+    try
+    {
+      reopen( dir.resolve( "reopen.log" ) );
+      tornRecord( dir.resolve( "torn.log" ) );
+      levelGain( dir.resolve( "level.log" ) );
+      compact( dir.resolve( "compact.log" ) );
+    } finally
+    {
+      try ( java.util.stream.Stream<Path> files = Files.list( dir ) )
+      {
+        for ( Path f : (Iterable<Path>) files::iterator ) Files.delete( f );
+      }
+      Files.delete( dir );
+    }
+    System.out.printf( "HighScoreStoreTest: %d failures%n", failures );
+    if ( failures > 0 ) System.exit( 1 );
+  }
+
+  private static void check( boolean ok, String what, Object... args )
+  {
+    if ( ok ) return;
+    failures++;
+    System.out.printf( "FAIL " + what + "%n", args );
+  }
+
+  /**
+   * The scores in a leaderboard, highest first
+   */
+  private static String scores( HighScoreStore store )
+  {
+    StringBuilder s = new StringBuilder();
+    for ( HighScoreStore.Score score : store.getLeaderboard() )
+      s.append( s.length() == 0 ? "" : " " ).append( score.score );
+    return s.toString();
+  }
+
+  private static int bestOn( HighScoreStore store, int level )
+  {
+    HighScoreStore.Score s = store.getLevelBest( level );
+    return s == null ? -1 : s.score;
+  }
+
+  /**
+   * Only the best K final scores are kept, and all come back on reopening
+   */
+  private static void reopen( Path file ) throws IOException
+  {
+    HighScoreStore store = new HighScoreStore( file, 3 );
+    int[] finals = { 50, 400, 20, 300, 100 };
+    for ( int s : finals ) store.add( 1, s, HighScoreStore.KIND_FINAL );
+    store.add( 2, 70, HighScoreStore.KIND_LEVEL );
+    store.add( 2, 90, HighScoreStore.KIND_LEVEL );
+    store.add( 2, 80, HighScoreStore.KIND_LEVEL );
+    check( scores( store ).equals( "400 300 100" ), "top 3 is %s", scores( store ) );
+    check( bestOn( store, 2 ) == 90, "level 2 best is %d", bestOn( store, 2 ) );
+    store.close();
+    check( Files.size( file ) == 8 * RECORD, "log is %d bytes", Files.size( file ) );
+
+    store = new HighScoreStore( file, 3 );
+    check( scores( store ).equals( "400 300 100" ), "top 3 reopened is %s", scores( store ) );
+    check( bestOn( store, 2 ) == 90, "level 2 best reopened is %d", bestOn( store, 2 ) );
+    check( bestOn( store, 1 ) == -1, "final scores counted as level 1 best" );
+    store.close();
+  }
+
+  /**
+   * A record that fails its checksum ends the log, the records
+   *  before it are kept and new records go in its place
+   */
+  private static void tornRecord( Path file ) throws IOException
+  {
+    HighScoreStore store = new HighScoreStore( file, 10 );
+    for ( int i = 1; i <= 5; i++ ) store.add( 1, i * 10, HighScoreStore.KIND_FINAL );
+    store.close();
+
+    // Damage the score in the last record, as if the write was cut short
+    try ( FileChannel ch = FileChannel.open( file, StandardOpenOption.WRITE ) )
+    {
+      ch.write( ByteBuffer.wrap( new byte[] { 0x12, 0x34 } ), 4 * RECORD + 9 );
+    }
+    store = new HighScoreStore( file, 10 );
+    check( scores( store ).equals( "40 30 20 10" ), "after a damaged record %s", scores( store ) );
+    store.add( 1, 60, HighScoreStore.KIND_FINAL );
+    store.close();
+
+    // And as if the program died part way through a new record
+    try ( FileChannel ch = FileChannel.open( file, StandardOpenOption.WRITE ) )
+    {
+      ByteBuffer part = ByteBuffer.allocate( RECORD / 2 );
+      part.putInt( 0x48534352 ).putInt( 1 ).putInt( 999 ).putInt( HighScoreStore.KIND_FINAL );
+      part.flip();
+      ch.write( part, ch.size() );
+    }
+    store = new HighScoreStore( file, 10 );
+    check( scores( store ).equals( "60 40 30 20 10" ), "after a torn record %s", scores( store ) );
+    store.close();
+  }
+
+  /**
+   * The best on a level is what was scored on that level, not the
+   *  score so far in the game
+   */
+  private static void levelGain( Path file ) throws IOException
+  {
+    HighScoreStore store = new HighScoreStore( file, 10 );
+    play( store, new int[] { 100, 250 }, 300 );           // Lost on level 3
+    play( store, new int[] { 40, 200, 260, 500 }, -1 );   // Completed the game
+    check( bestOn( store, 1 ) == 100, "level 1 best is %d", bestOn( store, 1 ) );
+    check( bestOn( store, 2 ) == 160, "level 2 best is %d", bestOn( store, 2 ) );
+    check( bestOn( store, 3 ) == 60, "level 3 best is %d", bestOn( store, 3 ) );
+    check( bestOn( store, 4 ) == 240, "level 4 best is %d", bestOn( store, 4 ) );
+    check( scores( store ).equals( "500 300" ), "final scores are %s", scores( store ) );
+    store.close();
+  }
+
+  /**
+   * Send the events for one game
+   * @param complete Score as each level is completed
+   * @param over     Score when the game was lost, -1 if it was not
+   */
+  private static void play( HighScoreStore store, int[] complete, int over )
+  {
+    int level = 1;
+    for ( int score : complete )
+    {
+      store.onEvent( GameEvent.LEVEL_START, 0, 0, level++ );
+      store.onEvent( GameEvent.LEVEL_COMPLETE, 0, 0, score );
+    }
+    if ( over < 0 ) return;
+    store.onEvent( GameEvent.LEVEL_START, 0, 0, level );
+    store.onEvent( GameEvent.GAME_OVER, 0, 0, over );
+  }
+
+  /**
+   * A log that grows past its limit is rewritten with just the scores
+   *  still wanted, and those are all there after reopening
+   */
+  private static void compact( Path file ) throws IOException
+  {
+    HighScoreStore store = new HighScoreStore( file, 5 );
+    int n = 20000;                           // Enough to compact twice
+    for ( int i = 0; i < n; i++ )
+      store.add( 1 + i % 4, (i * 7919) % n, i % 3 == 0 ? HighScoreStore.KIND_LEVEL
+                                                      : HighScoreStore.KIND_FINAL );
+    String top = scores( store );
+    int[] levels = new int[5];
+    for ( int l = 1; l <= 4; l++ ) levels[l] = bestOn( store, l );
+    store.close();
+    check( Files.size( file ) < (long) n * RECORD / 4, "log not compacted, %d bytes", Files.size( file ) );
+    check( !Files.exists( file.resolveSibling( file.getFileName() + ".tmp" ) ), "new log left behind" );
+
+    store = new HighScoreStore( file, 5 );
+    List<HighScoreStore.Score> board = store.getLeaderboard();
+    check( board.size() == 5 && scores( store ).equals( top ), "after compacting %s, was %s",
+           scores( store ), top );
+    for ( int l = 1; l <= 4; l++ )
+      check( bestOn( store, l ) == levels[l], "level %d best %d, was %d", l, bestOn( store, l ), levels[l] );
+    store.close();
+  }
+}
@@ -0,0 +1,100 @@
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Summarise a Flight Recorder recording of the game.
+ *  Prints latency percentiles for ticks, collision passes and frames,
+ *  the time per frame layer, and counts of sounds and level loads.
+ * Only events over the recording's thresholds are in the file, so
+ *  the percentiles describe the slow ticks and frames.
+ *    java JfrSummary game.jfr
+ */
+public class JfrSummary
+{
+  private static final String[] LAYERS =
+    { "background", "sprites", "bricks", "hud", "particles" };
+
+  private final Map<String,List<Long>> times = new LinkedHashMap<>();
+  private final Map<String,Integer>    counts = new LinkedHashMap<>();
+
+  public static void main( String args[] ) throws IOException
+  {
+    if ( args.length != 1 )
+    {
+      System.out.println( "Usage: java JfrSummary recording.jfr" );
+      return;
+    }
+    JfrSummary summary = new JfrSummary();
+    for ( RecordedEvent e : RecordingFile.readAllEvents( Paths.get( args[0] ) ) )
+      summary.add( e );
+    summary.print();
+  }
+
+  private void add( RecordedEvent e )
+  {
+    String name = e.getEventType().getName();
+    switch ( name )
+    {
+      case "brickbreaker.Tick":
+      case "brickbreaker.CollisionPass":
+        time( name, e.getDuration() );
+        break;
+      case "brickbreaker.Frame":
+        time( name, e.getDuration() );
+        for ( String layer : LAYERS )
+          time( name + "." + layer, Duration.ofNanos( e.getLong( layer ) ) );
+        break;
+      case "brickbreaker.Sound":
+        count( name + " " + e.getString( "sound" ) );
+        break;
+      case "brickbreaker.LevelLoad":
+        time( name, e.getDuration() );
+        break;
+    }
+  }
+
+  private void time( String name, Duration d )
+  {
+    times.computeIfAbsent( name, k -> new ArrayList<>() ).add( d.toNanos() );
+  }
+
+  private void count( String name )
+  {
+    counts.merge( name, 1, Integer::sum );
+  }
+
+  private void print()
+  {
+    System.out.printf( "%-36s %7s %8s %8s %8s %8s %8s%n",
+                       "event (ms)", "count", "p50", "p90", "p99", "p99.9", "max" );
+    for ( Map.Entry<String,List<Long>> e : times.entrySet() )
+    {
+      List<Long> t = e.getValue();
+      Collections.sort( t );
+      System.out.printf( "%-36s %7d %8.2f %8.2f %8.2f %8.2f %8.2f%n",
+                         e.getKey(), t.size(), pct( t, 50 ), pct( t, 90 ),
+                         pct( t, 99 ), pct( t, 99.9 ), t.get( t.size() - 1 ) / 1e6 );
+    }
+    for ( Map.Entry<String,Integer> e : counts.entrySet() )
+      System.out.printf( "%-36s %7d%n", e.getKey(), e.getValue() );
+  }
+
+  /**
+   * Percentile of sorted times, nearest rank
+   * @return time in milliseconds
+   */
+  private static double pct( List<Long> sorted, double p )
+  {
+    int rank = (int) Math.ceil( p / 100.0 * sorted.size() );
+    return sorted.get( Math.max( 0, rank - 1 ) ) / 1e6;
+  }
+}
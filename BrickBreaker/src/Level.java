@@ -9,8 +9,16 @@ public class Level {
 	private List<GameObj> bricks;  // The bricks
 	
 	private int brickCount = 0;
+	private final BrickAdjacency adjacency; // Which bricks touch
+	private int number;                     // Level number, 0 if not one of the game's
 	
-	Level(int row, int col){
+	/**
+	 * Build a level of bricks
+	 * @param row Rows of bricks
+	 * @param col Columns of bricks
+	 * @param explosiveEvery Every n'th brick explodes when destroyed, 0 for none
+	 */
+	Level(int row, int col, int explosiveEvery){
 		ROW = row;
 		COL = col;
 		
@@ -21,13 +29,38 @@ public class Level {
 		
 		for (int x = 0; x < COL; x++) {
     	  for (int y = 0; y < ROW; y++) {
-        	  bricks.add(new GameObj(x*width + 40, y*height + 160, width, height, Colour.CYAN));
+        	  GameObj brick = new GameObj(x*width + 40, y*height + 160, width, height, Colour.CYAN);
+        	  brick.setExplosive(explosiveEvery > 0 && brickCount % explosiveEvery == explosiveEvery - 1);
+        	  bricks.add(brick);
         	  brickCount ++;
           }
       }
+		adjacency = new BrickAdjacency(bricks);
 	}
 	
+	/**
+	 * Build one of the game's levels
+	 * @param levelNum Level number 1 .. Model.LAST_LEVEL
+	 * @return The level or null if there is no such level
+	 */
+	public static Level build(int levelNum) {
+		Level level;
+		switch (levelNum) {
+		case 1:  level = new Level(1,3,0); break;
+		case 2:  level = new Level(2,5,7); break;
+		case 3:  level = new Level(3,7,5); break;
+		case 4:  level = new Level(4,9,4); break;
+		default: return null;
+		}
+		level.number = levelNum;
+		return level;
+	}
+	
+	public int getNumber() {return number;}
+	
 	public int getBrickCount() {return brickCount;}
 	
 	public List<GameObj> getBricks() {return bricks;}
+	
+	public BrickAdjacency getAdjacency() {return adjacency;}
 }
@@ -1,3 +1,8 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 /**
  * Start the game
  *  The call to startGame() in the model starts 
@@ -11,20 +16,157 @@ public class Main
   public static final int H = 800; // Height of window
   public static final int W = 600; // Width of window
 
+  public static final int SPECTATOR_PORT = 7070; // Default spectator port
+
+  /**
+   * Run the game
+   * @param args --autopilot [hours] to play unattended and report
+   *             frame times, heap and threads every minute
+   *             --serve [port] to let spectators watch the game
+   *             --spectate host[:port] to watch a game
+   *             --export dir [--frames n] to save frames off screen,
+   *             dir - for raw frames on standard output
+   */
   public static void main( String args[] )
   {
+    boolean autopilot = option( args, "--autopilot" ) >= 0;
+
+    if ( option( args, "--spectate" ) >= 0 )
+    {
+      spectate( argument( args, "--spectate", "localhost" ) );
+      return;
+    }
+
+    if ( option( args, "--export" ) >= 0 )
+    {
+      export( argument( args, "--export", "frames" ),
+              Integer.parseInt( argument( args, "--frames", "3600" ) ) );
+      return;
+    }
+
     Debug.trace("BreakOut");
-    Debug.set( true );              // Set true to get debug info
+    Debug.set( ! autopilot );       // Set true to get debug info
 
     Model model = new Model(W,H);   // model of the Game
     View  view  = new View(W,H);    // View of the Game
-    new Controller( model, view );
+    Controller controller = new Controller( model, view );
+
+    if ( autopilot )
+    {
+      double hours = Double.parseDouble( argument( args, "--autopilot", "1.0" ) );
+      FrameStats stats = new FrameStats();
+      view.setFrameStats( stats );
+      new SoakMonitor( stats, 60_000 ).runFor( (long) (hours * 3_600_000) );
+      new Autopilot( model, controller ).start();
+    }
 
     model.addObserver( view );       // Add observer to the model
+    model.getEvents().subscribe( "Audio", new SoundPlayer() );
+    model.getEvents().subscribe( "Stats", new GameStats() );
+    model.getEvents().subscribe( "HUD",   view::onGameEvent );
+    model.getEvents().subscribe( "Particles", view.getParticles() );
+    openHighScores( model, view );
+    Runtime.getRuntime().addShutdownHook( new Thread( model::shutdown ) );
+    if ( option( args, "--serve" ) >= 0 )
+      serve( model, Integer.parseInt( argument( args, "--serve", "" + SPECTATOR_PORT ) ) );
     model.setLevel(1);
     model.createGameObjects();       // Ball, Bat & Bricks
 
     view.setVisible(true);           // Make visible
     model.startGame();               // Start playing the game
   }
+
+  /**
+   * Position of an option in the arguments
+   * @return index or -1 if not given
+   */
+  private static int option( String[] args, String name )
+  {
+    for ( int i = 0; i < args.length; i++ )
+      if ( args[i].equals( name ) ) return i;
+    return -1;
+  }
+
+  /**
+   * Value following an option, if there is one
+   * @return The value or the default if none
+   */
+  private static String argument( String[] args, String name, String def )
+  {
+    int i = option( args, name );
+    return i >= 0 && i + 1 < args.length && !args[i+1].startsWith("--") ? args[i+1] : def;
+  }
+
+  /**
+   * Let spectators connect and watch this game
+   */
+  private static void serve( Model model, int port )
+  {
+    try
+    {
+      model.setSpectators( new SpectatorServer( port ) );
+    } catch (IOException e)
+    {
+      Debug.error("Main - Cannot serve spectators\n%s", e.getMessage() );
+    }
+  }
+
+  /**
+   * Watch a game served by another copy of the game
+   * @param where host or host:port
+   */
+  private static void spectate( String where )
+  {
+    int colon = where.lastIndexOf( ':' );
+    String host = colon < 0 ? where : where.substring( 0, colon );
+    int    port = colon < 0 ? SPECTATOR_PORT : Integer.parseInt( where.substring( colon + 1 ) );
+
+    Model model = new Model(W,H);   // Mirror of the game watched
+    View  view  = new View(W,H);    // Drawn as normal
+    view.setTitle( "BreakOut - watching " + where );
+    model.addObserver( view );
+    view.setVisible(true);
+    try
+    {
+      new SpectatorClient( model, new InetSocketAddress( host, port ) ).run();
+    } catch (IOException e)
+    {
+      Debug.error("Main - Cannot watch %s\n%s", where, e.getMessage() );
+    }
+  }
+
+  /**
+   * Play off screen, saving each frame
+   * @param where Directory for PNG files, - for raw frames on standard output
+   * @param frames Most frames to save
+   */
+  private static void export( String where, int frames )
+  {
+    try
+    {
+      new FrameExporter( W, H, where.equals("-") ? null : Paths.get( where ) ).run( frames );
+    } catch (IOException e)
+    {
+      Debug.error("Main - Cannot export frames\n%s", e.getMessage() );
+    }
+  }
+
+  /**
+   * Keep high scores in the user's home directory, the game
+   *  still runs without them if the file cannot be opened
+   */
+  private static void openHighScores( Model model, View view )
+  {
+    try
+    {
+      Path file = Paths.get( System.getProperty("user.home"), ".brickbreaker", "scores.log" );
+      HighScoreStore store = new HighScoreStore( file, 10 );
+      model.getEvents().subscribe( "Scores", store );
+      view.setHighScores( store );
+      Runtime.getRuntime().addShutdownHook( new Thread( store::close ) );
+    } catch (IOException e)
+    {
+      Debug.error("Main - Cannot open high scores\n%s", e.getMessage() );
+    }
+  }
 }
@@ -1,8 +1,7 @@
-import javax.sound.sampled.*;
-import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Observable;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Model of the game of breakout
@@ -11,23 +10,28 @@ import java.util.Observable;
 
 public class Model extends Observable
 {
-  // Boarder
-  private static final int B              = 20;  // Border offset
-  private static final int M              = 40; // Menu offset
+  // Boarder, the sizes, moves and scores are shared with BatchEnv
+  static final int B              = 20;  // Border offset
+  static final int M              = 40; // Menu offset
   
   // Size of things
-  private static final float BALL_SIZE    = 30; // Ball side
-  private static final float BRICK_WIDTH  = 50; // Brick size
-  private static final float BRICK_HEIGHT = 30;
+  static final float BALL_SIZE    = 30; // Ball side
+  static final float BRICK_WIDTH  = 50; // Brick size
+  static final float BRICK_HEIGHT = 30;
 
-  private static final int BAT_MOVE       = 10; // Distance to move bat
+  static final int BAT_MOVE       = 10; // Distance to move bat
+  static final int S              = 5;  // Units to move ball (Speed)
+                                        //  Power ups vary both, see speed, batMove
    
+  public static final int LAST_LEVEL    = 4;   // Levels 1 .. 4
+
   // Scores
-  private static final int HIT_BRICK      = 50;  // Score
-  private static final int HIT_BOTTOM     = -200;// Score
+  static final int HIT_BRICK      = 50;  // Score
+  static final int HIT_BOTTOM     = -200;// Score
 
   private GameObj ball;          // The ball
   private List<GameObj> bricks;  // The bricks
+  private BrickAdjacency adjacency; // Which bricks touch
   private GameObj bat;           // The bat
   
   private boolean fast = false;   // Sleep in run loop
@@ -36,13 +40,34 @@ public class Model extends Observable
   private Level level;			 // The level
   private int levelNum;          // Level number
   private int gameState;		 // Game state 0=intro, 1=running, 2=won game, 3=game over
-  private boolean musicPlaying = false;
+  private final EventBus events = new EventBus( 1024 ); // Game events
+  private volatile SpectatorServer spectators = null;  // Watching the game
 
   private final float W;         // Width of area
   private final float H;         // Height of area
   
   private int playerLives;
   private int brickCount = 0;
+  private final CollisionMask[] brickMasks = new CollisionMask[2]; // By hit count
+
+  private static final int END_EFFECT = 0;    // Timer action, arg is the power up kind
+  private final List<PowerUp> drops = new ArrayList<>();     // Falling power ups
+  private final TimingWheel timers = new TimingWheel( 256 ); // Effects to undo, by tick
+  private final int[] effects = new int[PowerUp.KINDS];      // Timer ending each effect
+  private CollisionMask batMask, wideMask; // Bat masks, normal and wide
+  private int     speed    = S;       // Ball speed, S unless slowed
+  private int     batMove  = BAT_MOVE;// Bat move, BAT_MOVE unless wide
+  private boolean multiHit = false;   // Bricks break with one hit
+  private int     destroyed = 0;      // Bricks destroyed this level, for drops
+  private int     nextDrop  = 0;      // Kind of the next drop
+
+  private static final int PREFETCH_LEFT = 2;   // Build next level when 1/n of bricks left
+  private final AtomicReference<Level> prepared = new AtomicReference<>(); // Next level, built early
+  private volatile boolean prefetchStarted = false;
+  private volatile String[] prefetchedAssets = {};   // Images decoded for the level change
+
+  private volatile long lastTick   = 0;  // Time of last tick (ns)
+  private volatile long tickPeriod = 0;  // Time between last two ticks (ns)
 
   public Model( int width, int height )
   {
@@ -67,41 +92,103 @@ public class Model extends Observable
       
       brickCount = level.getBrickCount();
       bricks = level.getBricks();
+      adjacency = level.getAdjacency();
+
+      // Pixel masks of the sprites at the size they are drawn
+      ball.setMask( CollisionMask.forSprite( "ball.png", (int) BALL_SIZE, (int) BALL_SIZE ) );
+      batMask  = CollisionMask.forSprite( "bat.png", (int) bat.getWidth(), (int) bat.getHeight() );
+      bat.setMask( batMask );
+      wideMask = CollisionMask.forSprite( "bat.png", (int) (bat.getWidth() * PowerUp.WIDE ),
+                                          (int) bat.getHeight() );
+      if ( !bricks.isEmpty() )
+      {
+        GameObj b = bricks.get(0);
+        for ( int i = 0; i < brickMasks.length; i++ )
+          brickMasks[i] = CollisionMask.forSprite( "brick" + i + ".png",
+                                                   (int) b.getWidth(), (int) b.getHeight() );
+      }
+      for ( GameObj brick : bricks )
+        brick.setMask( brickMasks[ Math.min( brick.getHitCount(), brickMasks.length - 1 ) ] );
 
       playerLives = 3;
+
+      // No power ups carry over to a new level
+      timers.clear();
+      java.util.Arrays.fill( effects, -1 );
+      drops.clear();
+      speed = S; batMove = BAT_MOVE; multiHit = false;
+      destroyed = 0; nextDrop = 0;
       
       gameState = 0;
     }
       
   }
   
-  private ActivePart active  = null;
+  private final GameLoop loop = new GameLoop( "GameLoop" ); // Runs the game
 
   /**
-   * Start the continuous updates to the game
+   * Start the continuous updates to the game.
+   *  Any game already running is stopped first
    */
   public void startGame()
   {
-    synchronized ( Model.class )
-    {
-      stopGame();
-      active = new ActivePart();
-      Thread t = new Thread( active::runAsSeparateThread );
-      t.setDaemon(true);   // So may die when program exits
-      t.start();
-    }
+    loop.start( new ActivePart( true ) );
   }
 
+  /**
+   * A game to be run a tick at a time by the caller, rather than
+   *  the game loop. Ticks do not sleep, so the game runs as fast as
+   *  the caller steps it, and the same moves always give the same game.
+   *  Used to export frames off screen
+   * @return The game, call begin() then step() once per tick
+   */
+  public GameLoop.Session newOfflineGame()
+  {
+    return new ActivePart( false );
+  }
+
+  /**
+   * Pause the game, the game loop waits without using the CPU
+   *  until resumeGame() is called
+   */
+  public void pauseGame()
+  {
+    if ( gameState != 1 ) return;
+    loop.pause();
+    modelChanged();                 // Show paused
+  }
+
+  /**
+   * Carry on with a paused game
+   */
+  public void resumeGame()
+  {
+    lastTick = 0;                   // Pause is not a long tick
+    loop.resume();
+    modelChanged();
+  }
+
+  /**
+   * Is the game paused
+   * @return true if paused
+   */
+  public boolean isPaused()          { return loop.isPaused(); }
+
   /**
    * Stop the continuous updates to the game
-   * Will freeze the game, and let the thread die.
+   * Will freeze the game, returns once the game loop has stopped.
    */
   public void stopGame()
   {  
-    synchronized ( Model.class )
-    {
-      if ( active != null ) { active.stop(); active = null; }
-    }
+    loop.stop();
+  }
+
+  /**
+   * Stop the game loop for good, before the program exits
+   */
+  public void shutdown()
+  {
+    loop.shutdown( 1000 );
   }
 
   public GameObj getBat()             { return bat; }
@@ -109,12 +196,60 @@ public class Model extends Observable
   public GameObj getBall()            { return ball; }
 
   public List<GameObj> getBricks()    { return bricks; }
+
+  /**
+   * Power ups falling towards the bat, read with the model lock held
+   * @return The power ups
+   */
+  public List<PowerUp> getDrops()     { return drops; }
+
+  /**
+   * Events published as the game is played, subscribe to
+   *  react to them without slowing the game down
+   * @return The event bus
+   */
+  public EventBus getEvents()         { return events; }
   
   public int getPlayerLives() 		  { return playerLives; }
   
   public int getGameState() {return gameState;}
 
   public int getLevelNum() { return levelNum; }
+
+  /**
+   * Send the state of the game to spectators every tick
+   * @param server The spectator server, null for none
+   */
+  public void setSpectators( SpectatorServer server ) { spectators = server; }
+
+  /**
+   * Copy in state from a game being watched, see StateCodec.
+   *  Also counts as a tick, for drawing between ticks
+   * @param gameState The game state
+   * @param lives     Player lives
+   * @param score     The score
+   */
+  void setRemoteState( int gameState, int lives, int score )
+  {
+    long now = System.nanoTime();
+    this.gameState = gameState;
+    playerLives    = lives;
+    this.score     = score;
+    if ( lastTick != 0 ) tickPeriod = now - lastTick;
+    lastTick = now;
+  }
+
+  /**
+   * Time of the last simulation tick, from System.nanoTime()
+   * @return time in nanoseconds
+   */
+  public long getLastTick()           { return lastTick; }
+
+  /**
+   * Measured time between the last two simulation ticks
+   * @return time in nanoseconds, 0 if not yet known
+   */
+  public long getTickPeriod()         { return tickPeriod; }
   
   public void setGameState(int gameState) { this.gameState = gameState; }
 
@@ -125,26 +260,27 @@ public class Model extends Observable
 
   public void setLevel(int levelNum) {
 
+    Telemetry.LevelLoadEvent load = new Telemetry.LevelLoadEvent();
+    load.begin();
     this.levelNum = levelNum;
+    prefetchStarted = false;
 
-   switch (levelNum) {
-     case 1:
-       level = new Level(1,3);
-       break;
+    // Use the level built in the background if it is this one
+    Level ready = prepared.getAndSet( null );
+    Level built = ready != null && ready.getNumber() == levelNum ? ready : Level.build( levelNum );
+    if ( built != null ) level = built;
 
-     case 2:
-       level = new Level(2,5);
-       break;
-
-     case 3:
-       level = new Level(3,7);
-       break;
-
-     case 4:
-       level = new Level(4,9);
-       break;
-   }
+    // The pictures prefetched for the previous level change are not needed now
+    for ( String name : prefetchedAssets ) Assets.evict( name );
+    prefetchedAssets = new String[0];
 
+    if ( load.shouldCommit() )
+    {
+      load.level  = levelNum;
+      load.bricks = level == null ? 0 : level.getBrickCount();
+      load.prefetched = built != null && built == ready;
+      load.commit();
+    }
   }
 
 
@@ -175,9 +311,9 @@ public class Model extends Observable
     // * Fill in code to prevent the bat being moved off the screen *
     // **************************************************************
 	  
-	float dist = direction * BAT_MOVE;    // Actual distance to move
+	float dist = direction * batMove;     // Actual distance to move
 	
-	if (bat.getX() + dist > B && bat.getX() + dist <  W - B - BRICK_WIDTH*3)
+	if (bat.getX() + dist > B && bat.getX() + dist <  W - B - bat.getWidth())
 	{
 		Debug.trace( "Model: Move bat = %6.2f", dist );
 	    bat.moveX(dist);
@@ -185,172 +321,357 @@ public class Model extends Observable
 
   }
 
+  /**
+   * Predict where the ball will be when it next comes down to the bat.
+   *  Follows the bounces off the side walls and the top,
+   *  but ignores any bricks in the way
+   * @return x co-ordinate of the centre of the ball at the bat
+   */
+  public float predictLandingX()
+  {
+    synchronized ( Model.class )
+    {
+      float lo = B, hi = W - B - BALL_SIZE;       // Range of ball x
+      float y  = ball.getY();
+      float landY = bat.getY() - BALL_SIZE;       // Ball resting on bat
+
+      // Distance travelled in y, going up to the top first if need be
+      float dist = ball.getDirY() > 0 ? (y - M) + (landY - M)
+                                      : landY - y;
+      float x = ball.getX() + ball.getDirX() * Math.max( 0, dist );
+
+      // Fold the straight line path back between the walls
+      float span = hi - lo;
+      float pos  = (x - lo) % (2 * span);
+      if ( pos < 0 ) pos += 2 * span;
+      if ( pos > span ) pos = 2 * span - pos;
+      return lo + pos + BALL_SIZE / 2;
+    }
+  }
+
+  /**
+   * Build the level that follows this one in a worker thread, with
+   *  its collision masks, the brick sprites and the picture shown when
+   *  this level is complete,
+   *  so setLevel() can swap it in without waiting.
+   *  Called by the game loop, once a level, when few bricks are left
+   */
+  private void prefetchNext()
+  {
+    prefetchStarted = true;
+    final int current = levelNum;
+    final int next    = current < LAST_LEVEL ? current + 1 : 1;  // Game complete starts again
+    Workers.run( "Prefetch level " + next, () -> {
+      Level built = Level.build( next );
+      if ( built == null ) return;
+      List<GameObj> b = built.getBricks();
+      if ( !b.isEmpty() )
+        for ( int i = 0; i < brickMasks.length; i++ )
+          CollisionMask.forSprite( "brick" + i + ".png",
+                                   (int) b.get(0).getWidth(), (int) b.get(0).getHeight() );
+      String[] names = new String[ brickMasks.length + 1 ];
+      names[0] = current < LAST_LEVEL ? "level" + current + "Complete.png" : "gameComplete.png";
+      for ( int i = 0; i < brickMasks.length; i++ ) names[i+1] = "brick" + i + ".png";
+      for ( String name : names ) Assets.prefetch( name );
+      prefetchedAssets = names;
+      prepared.set( built );
+      Debug.trace( "Model: level %d ready, %d bricks", next, built.getBrickCount() );
+    } );
+  }
+
   public void exitGame(){
+    shutdown();
     System.exit(0);
   }
 
   /**
-   * This method is run in a separate thread
+   * One game, run a tick at a time by the game loop thread
    * Consequence: Potential concurrent access to shared variables in the class
    */
-  class ActivePart
+  class ActivePart implements GameLoop.Session, TimingWheel.Expired
   {
-    private boolean runGame = true;
+    private boolean runGame = true;   // Only used by the game loop thread
+    private final Collision contact = new Collision(); // Reused every test
+    private final boolean paced;      // Sleep between ticks
+    private int[] queue = new int[0]; // Bricks waiting to explode
+    private int[] seen  = new int[0]; // Blast each brick was last reached by
+    private int   blast = 0;          // Number of the current blast
+
+    ActivePart( boolean paced )       { this.paced = paced; }
+
+    /**
+     * Bounce the ball off the side it hit, if it is moving into it,
+     *  and move it back out so it is not hit again next tick
+     * @param c The collision
+     */
+    private void bounce( Collision c )
+    {
+      if ( c.getNormalX() * S * ball.getDirX() < 0 )  ball.changeDirectionX();
+      if ( c.getNormalY() * -S * ball.getDirY() < 0 ) ball.changeDirectionY();
+      ball.separate( c );
+    }
+
+    /**
+     * Destroy the bricks around an explosive brick that has just been
+     *  destroyed, and around any explosive bricks destroyed by that,
+     *  breadth first. Only the bricks reached are looked at, using
+     *  the neighbours worked out when the level was built.
+     *  One EXPLOSION event is published for the whole blast
+     * @param first Index of the brick that exploded
+     */
+    private void explode( int first )
+    {
+      if ( queue.length < bricks.size() )
+      {
+        queue = new int[bricks.size()];
+        seen  = new int[bricks.size()];
+      }
+      if ( ++blast == 0 ) { java.util.Arrays.fill( seen, 0 ); blast = 1; }
+
+      int head = 0, tail = 0, chain = 0;
+      queue[tail++] = first;
+      seen[first]   = blast;
+      while ( head < tail )
+      {
+        int i = queue[head++];
+        for ( int k = adjacency.start(i); k < adjacency.end(i); k++ )
+        {
+          int j = adjacency.get(k);
+          if ( seen[j] == blast ) continue;
+          seen[j] = blast;
+          GameObj brick = bricks.get(j);
+          if ( !brick.isVisible() ) continue;
+
+          brick.setVisibility(false);
+          brickCount--;
+          chain++;
+          score += HIT_BRICK;
+          dropFrom( brick );
+          if ( spectators != null ) spectators.brickChanged( j );
+          if ( brick.isExplosive() ) queue[tail++] = j;   // Chain reaction
+        }
+      }
+
+      GameObj b = bricks.get(first);
+      events.publish( GameEvent.EXPLOSION, b.getX() + b.getWidth()/2,
+                      b.getY() + b.getHeight()/2, chain );
+    }
 
-    public void stop()
+    /**
+     * Count a destroyed brick, every DROP_EVERY'th one drops a
+     *  power up, the kinds in turn
+     * @param brick The brick destroyed
+     */
+    private void dropFrom( GameObj brick )
     {
-      runGame = false;
+      if ( ++destroyed % PowerUp.DROP_EVERY != 0 ) return;
+      drops.add( new PowerUp( nextDrop, brick.getX() + brick.getWidth()/2,
+                              brick.getY() + brick.getHeight()/2 ) );
+      nextDrop = (nextDrop + 1) % PowerUp.KINDS;
     }
 
-    public void runAsSeparateThread()
+    /**
+     * Catch a power up and start its effect. Catching one whose
+     *  effect is still running starts its time again
+     * @param p The power up caught by the bat
+     */
+    private void collect( PowerUp p )
     {
-      final int S = 5; // Units to move (Speed)
-      
-      if (gameState == 1) {
-    	  try
-          {
-            synchronized ( Model.class ) // Make thread safe
-            {
-              GameObj       ball   = getBall();     // Ball in game
-              GameObj       bat    = getBat();      // Bat
-              List<GameObj> bricks = getBricks();   // Bricks
-              int playerLives	   = getPlayerLives(); // Player Lives
-              gameState			   = getGameState();
-            }
-      
-            while (runGame)
-            {
-              synchronized ( Model.class ) // Make thread safe
-              {
-            	  
-            	// Check player lives
-            	if (playerLives == 0) {
-            		runGame = false;
-            		setGameState(3);
-            	}
-            	
-            	// Check brick Count
-            	if (brickCount == 0) {
-            		runGame = false;
-            		setGameState(2);
-            	}
-
-                // Start background music
-                if (!musicPlaying){
-
-                  musicPlaying = true;
-
-                  // Background Music play
-                  try {
-                    File wow = new File("assets/bgMusic.wav");
-                    AudioInputStream stream = AudioSystem.getAudioInputStream(wow);
-                    AudioFormat format = stream.getFormat();
-                    DataLine.Info info = new DataLine.Info(Clip.class, format);
-                    Clip clip = (Clip) AudioSystem.getLine(info);
-                    clip.open(stream);
-                    clip.loop(100);
-
-                  } catch (Exception e){}
-                }
-            	
-                float ballX = ball.getX();  // Current x,y position
-                float ballY = ball.getY();
-                // Deal with possible edge of board hit
-                if (ballX >= W - B - BALL_SIZE)  ball.changeDirectionX();
-                if (ballX <= 0 + B            )  ball.changeDirectionX();
-                if (ballY >= H - B - BALL_SIZE)  // Bottom
-                { 
-                  ball.changeDirectionY(); 
-                  addToScore( HIT_BOTTOM );
-                  playerLives--;
-                  
-                  ball.setYPos(H/2);
-                  ball.changeDirectionX();
-                  
-                }
-                if (ballY <= 0 + M            )  ball.changeDirectionY();
-
-                // As only a hit on the bat/ball is detected it is 
-                //  assumed to be on the top or bottom of the object.
-                // A hit on the left or right of the object
-                //  has an interesting affect
-        
-                boolean hit = false;
-                // *[3]******************************************************[3]*
-                // * Fill in code to check if a visible brick has been hit      *
-                // *      The ball has no effect on an invisible brick          *
-                // **************************************************************
-                if (hit)
-                  ball.changeDirectionY();
-        
-                if ( ball.hitBy(bat) )
-                  ball.changeDirectionY();
-                
-                for (GameObj brick : bricks)
-                {
-                	float brickX = brick.getX();
-                	float brickY = brick.getY();
-                	
-                	float brickWidth = brick.getWidth();
-                	float brickHeight = brick.getHeight();
-                	
-                	float ballWidth = ball.getWidth();
-                	
-                	if (ball.hitBy(brick) && brick.isVisible() && brick.getHitCount() == 1)
-                	{
-                		ball.changeDirectionY();
-                		brick.setVisibility(false);
-                		brickCount--;
-                		
-                		score += HIT_BRICK;
-
-
-                        // When brick is hit plays wav file sound
-                        try {
-                          File wow = new File("assets/hit.wav");
-                          AudioInputStream stream = AudioSystem.getAudioInputStream(wow);
-                          AudioFormat format = stream.getFormat();
-                          DataLine.Info info = new DataLine.Info(Clip.class, format);
-                          Clip clip = (Clip) AudioSystem.getLine(info);
-                          clip.open(stream);
-                          clip.start();
-                        } catch (Exception e){}
-                	} 
-                	else if (ball.hitBy(brick) && brick.isVisible() && brick.getHitCount() == 0)
-                	{
-                		ball.changeDirectionY();
-                		brick.incrementHitCount();
-                		
-                		score += HIT_BRICK;
-
-
-                      // When brick is hit plays wav file sound
-                      try {
-                        File wow = new File("assets/hit.wav");
-                        AudioInputStream stream = AudioSystem.getAudioInputStream(wow);
-                        AudioFormat format = stream.getFormat();
-                        DataLine.Info info = new DataLine.Info(Clip.class, format);
-                        Clip clip = (Clip) AudioSystem.getLine(info);
-                        clip.open(stream);
-                        clip.start();
-                      } catch (Exception e){}
-                	}
-                	
-            	}
-                
-              }
-              modelChanged();      // Model changed refresh screen
-              Thread.sleep( fast? 1 : 3 );
-              ball.moveX(S);  ball.moveY(-S);
-            }
-          } catch (Exception e) 
-          { 
-            Debug.error("Model.runAsSeparateThread - Error\n%s", 
-                        e.getMessage() );
-          }
-      } else {
+      int kind = p.getKind();
+      switch ( kind )
+      {
+        case PowerUp.WIDE_BAT:
+          batWidth( BRICK_WIDTH*3 * PowerUp.WIDE, wideMask );
+          batMove = Math.round( BAT_MOVE * PowerUp.WIDE );
+          break;
+        case PowerUp.SLOW_BALL:  speed = PowerUp.SLOW_S; break;
+        case PowerUp.EXTRA_LIFE: playerLives++;          break;
+        case PowerUp.MULTI_HIT:  multiHit = true;        break;
+      }
+      if ( PowerUp.TICKS[kind] > 0 )
+      {
+        timers.cancel( effects[kind] );
+        effects[kind] = timers.schedule( PowerUp.TICKS[kind], END_EFFECT, kind );
+      }
+      events.publish( GameEvent.POWER_UP, p.getX() + p.getWidth()/2,
+                      p.getY() + p.getHeight()/2, kind );
+    }
+
+    /**
+     * A timer is due, called by the timing wheel at the start of a tick
+     * @param action What to do, END_EFFECT
+     * @param kind   Power up whose effect has run out
+     */
+    @Override
+    public void onTimer( int action, int kind )
+    {
+      if ( action != END_EFFECT ) return;
+      effects[kind] = -1;
+      switch ( kind )
+      {
+        case PowerUp.WIDE_BAT:
+          batWidth( BRICK_WIDTH*3, batMask );
+          batMove = BAT_MOVE;
+          break;
+        case PowerUp.SLOW_BALL: speed = S;        break;
+        case PowerUp.MULTI_HIT: multiHit = false; break;
+      }
+      events.publish( GameEvent.POWER_UP_END, 0, 0, kind );
+    }
+
+    /**
+     * Change the width of the bat about its centre, keeping it on the screen
+     */
+    private void batWidth( float width, CollisionMask mask )
+    {
+      float x = bat.getX() + bat.getWidth()/2 - width/2;
+      bat.setWidth( width );
+      bat.setPosition( Math.max( B, Math.min( W - B - width, x ) ), bat.getY() );
+      bat.savePosition();     // Don't draw the jump
+      bat.setMask( mask );
+    }
+
+    /**
+     * Start of the game, in the game loop thread
+     * @return false if not playing, so there are no ticks to run
+     */
+    @Override
+    public boolean begin()
+    {
+      if (gameState != 1) {
     	  modelChanged();      // Model changed refresh screen
+    	  return false;
+      }
+      synchronized ( Model.class ) // Make thread safe
+      {
+        events.publish( GameEvent.LEVEL_START, 0, 0, levelNum );
+      }
+      return true;
+    }
+
+    /**
+     * One tick of the game, in the game loop thread
+     * @return false when the game is over or the level complete
+     */
+    @Override
+    public boolean step() throws InterruptedException
+    {
+      synchronized ( Model.class ) // Make thread safe
+      {
+        Telemetry.TickEvent tick = new Telemetry.TickEvent();
+        tick.begin();
+        timers.advance( this );     // Effects that run out this tick
+    	  
+    	// Check player lives
+    	if (playerLives == 0) {
+    		runGame = false;
+    		setGameState(3);
+    		events.publish( GameEvent.GAME_OVER, 0, 0, score );
+    	}
+    	
+    	// Check brick Count
+    	if (brickCount == 0) {
+    		runGame = false;
+    		setGameState(2);
+    		events.publish( GameEvent.LEVEL_COMPLETE, 0, 0, score );
+    	}
+    	
+        float ballX = ball.getX();  // Current x,y position
+        float ballY = ball.getY();
+        // Deal with possible edge of board hit
+        if (ballX >= W - B - BALL_SIZE)  ball.changeDirectionX();
+        if (ballX <= 0 + B            )  ball.changeDirectionX();
+        if (ballY >= H - B - BALL_SIZE)  // Bottom
+        { 
+          ball.changeDirectionY(); 
+          addToScore( HIT_BOTTOM );
+          playerLives--;
+          events.publish( GameEvent.LIFE_LOST, ballX, ballY, playerLives );
+          
+          ball.setYPos(H/2);
+          ball.savePosition();    // Don't draw the jump
+          ball.changeDirectionX();
+          
+        }
+        if (ballY <= 0 + M            )  ball.changeDirectionY();
+
+        Telemetry.CollisionPassEvent pass = new Telemetry.CollisionPassEvent();
+        pass.begin();
+        int tested = 0, hits = 0;
+
+        // Bounce off the side of the bat or brick actually hit
+        if ( ball.collide( bat, contact ) )
+        {
+          bounce( contact );
+          events.publish( GameEvent.BAT_HIT, ball.getX() + BALL_SIZE/2,
+                          ball.getY() + BALL_SIZE/2, 0 );
+        }
+
+        // Power ups caught by the bat or gone off the bottom
+        for ( int i = drops.size() - 1; i >= 0; i-- )
+        {
+          PowerUp p = drops.get(i);
+          if ( p.hitBy( bat ) )   { drops.remove(i); collect( p ); }
+          else if ( p.getY() > H ) drops.remove(i);
+        }
+
+        // *[3]******************************************************[3]*
+        // * Fill in code to check if a visible brick has been hit      *
+        // *      The ball has no effect on an invisible brick          *
+        // **************************************************************
+        for (int i = 0; i < bricks.size(); i++)
+        {
+        	GameObj brick = bricks.get(i);
+        	if ( !brick.isVisible() ) continue;
+        	tested++;
+        	if ( !ball.collide( brick, contact ) ) continue;
+
+        	hits++;
+        	bounce( contact );
+        	if ( brick.getHitCount() == 1 || multiHit )
+        	{
+        		brick.setVisibility(false);
+        		brickCount--;
+        		events.publish( GameEvent.BRICK_DESTROYED, brick.getX() + brick.getWidth()/2,
+        		                brick.getY() + brick.getHeight()/2, i );
+        		dropFrom( brick );
+        		if ( brick.isExplosive() ) explode( i );
+        	} else {
+        		brick.incrementHitCount();
+        		brick.setMask( brickMasks[1] );      // Cracked sprite
+        		events.publish( GameEvent.BRICK_HIT, brick.getX() + brick.getWidth()/2,
+        		                brick.getY() + brick.getHeight()/2, i );
+        	}
+        	score += HIT_BRICK;
+        	if ( spectators != null ) spectators.brickChanged( i );
+    	}
+
+        if ( !prefetchStarted && brickCount * PREFETCH_LEFT <= bricks.size() )
+          prefetchNext();
+
+        if ( pass.shouldCommit() )
+          { pass.bricksTested = tested; pass.hits = hits; pass.commit(); }
+
+        if ( tick.shouldCommit() )
+        {
+          tick.level = levelNum; tick.bricksTested = tested; tick.hits = hits;
+          tick.commit();
+        }
+      }
+      synchronized ( Model.class ) // Make thread safe
+      {
+        long now = System.nanoTime();
+        ball.savePosition(); bat.savePosition();
+        ball.moveX(speed);  ball.moveY(-speed);
+        for ( PowerUp p : drops )
+          p.setPosition( p.getX(), p.getY() + PowerUp.FALL );
+        if ( lastTick != 0 ) tickPeriod = now - lastTick;
+        lastTick = now;
+        if ( spectators != null ) spectators.publish( Model.this );
       }
+      modelChanged();      // Model changed refresh screen, after the move
+      if ( paced ) Thread.sleep( fast? 1 : 3 );
+      return runGame;
     }
   }
   
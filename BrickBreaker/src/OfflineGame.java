@@ -0,0 +1,71 @@
+/**
+ * Plays a game off screen, a frame at a time, in the caller's thread.
+ *  The bat is steered as the autopilot would and each result screen
+ *  is shown for a second, then the next level is started, until the
+ *  last level is complete or the game is lost.
+ * Nothing depends on the real clock, so the same build always plays
+ *  the same game. Used by FrameExporter and RenderBench.
+ */
+class OfflineGame
+{
+  public  static final int FPS             = 60;
+  private static final int TICKS_PER_FRAME = 4;   // About the live game's speed
+  private static final int RESULT_FRAMES   = FPS; // Time a result screen is shown
+
+  private final Model model;
+  private GameLoop.Session game;      // Level being played, null on a result screen
+  private int level     = 1;
+  private int resultFor = 0;          // Frames result screen shown
+
+  /**
+   * Start the game on the first level
+   * @param model The model to play, nothing else may change it
+   */
+  public OfflineGame( Model model )
+  {
+    this.model = model;
+    game = newGame( level );
+  }
+
+  /**
+   * Move the game on by one frame
+   * @return false once the game is over, the model is unchanged
+   */
+  public boolean advance()
+  {
+    try
+    {
+      if ( game != null )
+      {
+        for ( int t = 0; t < TICKS_PER_FRAME && game != null; t++ )
+        {
+          int steer = Autopilot.steer( model );
+          if ( steer != 0 ) model.moveBat( steer );
+          if ( !game.step() ) game = null;
+        }
+      } else if ( ++resultFor >= RESULT_FRAMES )
+      {
+        if ( model.getGameState() != 2 || level >= Model.LAST_LEVEL ) return false;
+        game = newGame( ++level );
+        resultFor = 0;
+      }
+      return true;
+    } catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * Set up a level and start playing it
+   */
+  private GameLoop.Session newGame( int levelNum )
+  {
+    model.setLevel( levelNum );
+    model.createGameObjects();       // Ball, Bat & Bricks
+    model.setGameState( 1 );
+    GameLoop.Session s = model.newOfflineGame();
+    return s.begin() ? s : null;
+  }
+}
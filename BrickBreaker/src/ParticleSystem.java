@@ -0,0 +1,147 @@
+import java.awt.Graphics2D;
+import java.awt.Image;
+
+/**
+ * Debris thrown out when bricks break or the ball hits the bat.
+ *  Particles are held in fixed size arrays, one entry per particle,
+ *  so no objects are created as they come and go.
+ *  A dead particle is replaced by the last live one, keeping the
+ *  live particles at the front of the arrays.
+ * When full, or when more than the emit budget is asked for in one
+ *  frame, new particles are simply not created.
+ * Emitted from the event consumer thread, updated and drawn in the
+ *  Swing thread, so access is guarded by this object's own lock,
+ *  never by the model's.
+ */
+public class ParticleSystem implements EventBus.Handler
+{
+  public static final int SPRITE_BRICK0 = 0;  // Sprite index for each particle
+  public static final int SPRITE_BRICK1 = 1;
+  public static final int SPRITE_BALL   = 2;
+
+  private static final float GRAVITY    = 600.0f; // pixels / s / s
+  private static final float SPEED      = 250.0f; // Max initial speed pixels / s
+  private static final float LIFETIME   = 1.2f;   // Max life in seconds
+  public  static final int   SIZE       = 6;      // Size drawn in pixels
+
+  private final int     capacity;
+  private final float[] px, py;     // Position
+  private final float[] vx, vy;     // Velocity
+  private final float[] life;       // Seconds left to live
+  private final byte[]  sprite;     // Sprite to draw
+  private int live        = 0;      // Number of live particles
+  private int emitBudget;           // Particles that may still be emitted this frame
+  private int maxEmit;              // Emit budget per frame
+  private int seed        = 0x2545F491; // Random number state
+
+  /**
+   * @param capacity Most particles that can be alive at once
+   * @param maxEmit  Most particles that can be created per frame
+   */
+  public ParticleSystem( int capacity, int maxEmit )
+  {
+    this.capacity = capacity;
+    this.maxEmit  = maxEmit;
+    emitBudget    = maxEmit;
+    px = new float[capacity]; py = new float[capacity];
+    vx = new float[capacity]; vy = new float[capacity];
+    life   = new float[capacity];
+    sprite = new byte[capacity];
+  }
+
+  @Override
+  public void onEvent( int type, float x, float y, int value )
+  {
+    switch ( type )
+    {
+      case GameEvent.BRICK_DESTROYED: emit( x, y, 60, SPRITE_BRICK1 ); break;
+      case GameEvent.BRICK_HIT:       emit( x, y, 20, SPRITE_BRICK0 ); break;
+      case GameEvent.BAT_HIT:         emit( x, y, 12, SPRITE_BALL );   break;
+      case GameEvent.EXPLOSION:       emit( x, y, Math.min( 40 * value, 2000 ), SPRITE_BRICK1 ); break;
+      case GameEvent.POWER_UP:        emit( x, y, 30, SPRITE_BALL );   break;
+    }
+  }
+
+  /**
+   * Throw out particles from a point in random directions
+   * @param x      X position
+   * @param y      Y position
+   * @param count  Number wanted, fewer are made if over budget
+   * @param sprite Sprite index to draw them with
+   */
+  public synchronized void emit( float x, float y, int count, int sprite )
+  {
+    int n = Math.min( count, Math.min( emitBudget, capacity - live ) );
+    emitBudget -= n;
+    for ( int i = live; i < live + n; i++ )
+    {
+      px[i] = x; py[i] = y;
+      vx[i] = (random() * 2 - 1) * SPEED;
+      vy[i] = (random() * 2 - 1) * SPEED;
+      life[i] = (0.5f + random() * 0.5f) * LIFETIME;
+      this.sprite[i] = (byte) sprite;
+    }
+    live += n;
+  }
+
+  /**
+   * Move all particles on and remove dead ones
+   * @param dt Seconds since the last update
+   */
+  public synchronized void update( float dt )
+  {
+    emitBudget = maxEmit;
+    float dv = GRAVITY * dt;
+    int i = 0;
+    while ( i < live )
+    {
+      float left = life[i] - dt;
+      if ( left <= 0 )                    // Dead, move last one here
+      {
+        int last = --live;
+        px[i] = px[last]; py[i] = py[last];
+        vx[i] = vx[last]; vy[i] = vy[last];
+        life[i] = life[last]; sprite[i] = sprite[last];
+        continue;
+      }
+      life[i] = left;
+      vy[i] += dv;
+      px[i] += vx[i] * dt;
+      py[i] += vy[i] * dt;
+      i++;
+    }
+  }
+
+  /**
+   * Draw all live particles
+   * @param g       Graphics context
+   * @param sprites Images to draw, already scaled to SIZE, by sprite index
+   */
+  public synchronized void draw( Graphics2D g, Image[] sprites )
+  {
+    for ( int i = 0; i < live; i++ )
+      g.drawImage( sprites[sprite[i]], (int) px[i], (int) py[i], null );
+  }
+
+  /**
+   * Change how many particles may be created per frame
+   * @param maxEmit The new budget
+   */
+  public synchronized void setMaxEmit( int maxEmit )  { this.maxEmit = maxEmit; }
+
+  /**
+   * Number of live particles
+   * @return count
+   */
+  public synchronized int getLive()                   { return live; }
+
+  /**
+   * Quick random number, xorshift
+   * @return 0.0 .. 1.0
+   */
+  private float random()
+  {
+    seed ^= seed << 13; seed ^= seed >>> 17; seed ^= seed << 5;
+    return (seed >>> 8) / (float) (1 << 24);
+  }
+}
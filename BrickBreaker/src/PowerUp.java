@@ -0,0 +1,56 @@
+/**
+ * A power up dropped by a destroyed brick, falling towards the bat.
+ *  Catching it with the bat gives its effect. Timed effects are undone
+ *  a fixed number of ticks later, see Model and BatchEnv.
+ * The kinds, how long they last and what they change are here,
+ *  so Model and BatchEnv follow the same rules.
+ */
+public class PowerUp extends GameObj
+{
+  public static final int WIDE_BAT   = 0;  // Bat wider and faster
+  public static final int SLOW_BALL  = 1;  // Ball moves slower
+  public static final int EXTRA_LIFE = 2;  // One more life, does not expire
+  public static final int MULTI_HIT  = 3;  // Bricks break with one hit
+  public static final int KINDS      = 4;
+
+  public static final String[] NAMES   = { "WIDE_BAT", "SLOW_BALL", "EXTRA_LIFE", "MULTI_HIT" };
+  public static final String[] LETTERS = { "W", "S", "L", "M" };
+  public static final int[]    TICKS   = { 2500, 2000, 0, 1500 };  // How long each lasts, 0 for ever
+
+  public static final int   DROP_EVERY = 5;     // A drop every n bricks destroyed
+  public static final float WIDTH      = 30;    // Size of a falling power up
+  public static final float HEIGHT     = 15;
+  public static final float FALL       = 2;     // Units fallen per tick
+  public static final float WIDE       = 1.5f;  // Bat width and move when WIDE_BAT
+  public static final int   SLOW_S     = 3;     // Ball speed when SLOW_BALL
+
+  private final int kind;
+
+  /**
+   * A power up falling from the centre of a brick
+   * @param kind  WIDE_BAT, SLOW_BALL, EXTRA_LIFE or MULTI_HIT
+   * @param x     Centre x
+   * @param y     Centre y
+   */
+  public PowerUp( int kind, float x, float y )
+  {
+    super( x - WIDTH/2, y - HEIGHT/2, WIDTH, HEIGHT, Colour.CYAN );
+    this.kind = kind;
+  }
+
+  /**
+   * What the power up does
+   * @return WIDE_BAT, SLOW_BALL, EXTRA_LIFE or MULTI_HIT
+   */
+  public int getKind()      { return kind; }
+
+  /**
+   * Name of a kind of power up for debug output
+   * @param kind The kind
+   * @return The name
+   */
+  public static String name( int kind )
+  {
+    return kind >= 0 && kind < NAMES.length ? NAMES[kind] : "POWER_UP_" + kind;
+  }
+}
@@ -0,0 +1,341 @@
+import java.awt.Canvas;
+import java.awt.Frame;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the cost of whole frames, by replaying a recorded game
+ *  through the GameRenderer the View uses.
+ *    java RenderBench record trace.bin [frames]  Play off screen, saving each frame's state
+ *    java RenderBench run trace.bin [passes]     Replay under each Java2D pipeline
+ * A pipeline can only be chosen as a JVM starts, so run starts a JVM
+ *  for each of
+ *    software  -Dsun.java2d.xrender=false, core X11 and software loops
+ *    xrender   -Dsun.java2d.xrender=true
+ *    opengl    -Dsun.java2d.opengl=true, falls back if there is no OpenGL
+ *  and reports the pipeline actually in use. Each JVM draws the trace
+ *  into an image in memory (buffered), an accelerated image (volatile)
+ *  and a window (window), at each FrameGovernor quality level, and
+ *  prints ms per frame percentiles and frames per second.
+ *  The first pass warms up the JIT and is not counted.
+ * With no display only the buffered image can be drawn, by software.
+ * Trace layout (big endian)
+ *   int MAGIC, int VERSION, int width, int height, int frames
+ *   for each frame
+ *     key frame, see StateCodec
+ *     short number of events, then for each
+ *       int type, float x, float y, int value
+ */
+public class RenderBench
+{
+  private static final int MAGIC   = 0x42425452;   // "BBTR"
+  private static final int VERSION = 2;           // Frames with power ups
+  private static final int EVENT   = 16;           // Bytes per event
+
+  private static final String[][] PIPELINES = {
+    { "software", "-Dsun.java2d.xrender=false", "-Dsun.java2d.opengl=false" },
+    { "xrender",  "-Dsun.java2d.xrender=true",  "-Dsun.java2d.opengl=false" },
+    { "opengl",   "-Dsun.java2d.opengl=true" },
+  };
+  private static final String[] QUALITY = { "FULL", "NO_HUD", "NO_BG" };
+
+  private int          width, height;
+  private ByteBuffer[] states;          // Key frame of each frame
+  private ByteBuffer[] events;          // Events during each frame
+
+  public static void main( String args[] ) throws Exception
+  {
+    String mode = args.length >= 2 ? args[0] : "";
+    switch ( mode )
+    {
+      case "record":
+        record( Paths.get( args[1] ), args.length > 2 ? Integer.parseInt( args[2] ) : 1800 );
+        break;
+      case "run":
+        run( args[1], args.length > 2 ? Integer.parseInt( args[2] ) : 2 );
+        break;
+      case "child":
+        new RenderBench( Paths.get( args[1] ) ).measure( Integer.parseInt( args[2] ) );
+        break;
+      default:
+        System.out.println( "Usage: java RenderBench record trace.bin [frames]" );
+        System.out.println( "       java RenderBench run trace.bin [passes]" );
+    }
+  }
+
+  /**
+   * Play a game off screen and save the state of every frame
+   */
+  private static void record( Path file, int frames ) throws IOException
+  {
+    Debug.set( false );
+    Model model = new Model( Main.W, Main.H );
+    ByteBuffer[] frameEvents = { ByteBuffer.allocate( 64 * EVENT ) };
+    model.getEvents().subscribeDirect( (type, x, y, value) -> {
+      ByteBuffer e = frameEvents[0];
+      if ( e.remaining() < EVENT )
+      {
+        e.flip();
+        frameEvents[0] = e = ByteBuffer.allocate( e.capacity() * 2 ).put( e );
+      }
+      e.putInt( type ).putFloat( x ).putFloat( y ).putInt( value );
+    } );
+
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream( body );
+    ByteBuffer state = ByteBuffer.allocate( 64 * 1024 );
+    OfflineGame game = new OfflineGame( model );
+    int n = 0;
+    for ( ; n < frames && game.advance(); n++ )
+    {
+      state.clear();
+      synchronized ( Model.class )
+      {
+        int need = StateCodec.size( model, model.getBricks().size() );
+        if ( state.capacity() < need ) state = ByteBuffer.allocate( need * 2 );
+        StateCodec.encode( state, model, true, new int[0], 0 );
+      }
+      out.write( state.array(), 0, state.position() );
+      ByteBuffer e = frameEvents[0];
+      out.writeShort( e.position() / EVENT );
+      out.write( e.array(), 0, e.position() );
+      e.clear();
+    }
+
+    try ( DataOutputStream trace = new DataOutputStream( Files.newOutputStream( file ) ) )
+    {
+      trace.writeInt( MAGIC ); trace.writeInt( VERSION );
+      trace.writeInt( Main.W ); trace.writeInt( Main.H );
+      trace.writeInt( n );
+      body.writeTo( trace );
+    }
+    System.out.printf( "%d frames, %d bytes written to %s%n", n, body.size() + 20, file );
+  }
+
+  /**
+   * Replay a trace in a new JVM for each pipeline and show the results
+   */
+  private static void run( String trace, int passes ) throws IOException, InterruptedException
+  {
+    String java = Paths.get( System.getProperty("java.home"), "bin", "java" ).toString();
+    String cp   = System.getProperty( "java.class.path" );
+    boolean headless = GraphicsEnvironment.isHeadless();
+
+    System.out.printf( "%-9s %-9s %-8s %-7s %7s %7s %7s %7s %9s%n", "pipeline", "target",
+                       "quality", "frames", "p50ms", "p90ms", "p99ms", "maxms", "frames/s" );
+    for ( String[] p : PIPELINES )
+    {
+      if ( headless && !p[0].equals("software") ) continue;   // Same loops in memory
+      List<String> cmd = new ArrayList<>( Arrays.asList( java, "-cp", cp ) );
+      if ( headless ) cmd.add( "-Djava.awt.headless=true" );
+      cmd.addAll( Arrays.asList( p ).subList( 1, p.length ) );
+      cmd.addAll( Arrays.asList( "RenderBench", "child", trace, "" + passes ) );
+
+      Process child = new ProcessBuilder( cmd ).redirectErrorStream( true ).start();
+      try ( BufferedReader in = new BufferedReader( new InputStreamReader( child.getInputStream() ) ) )
+      {
+        for ( String line; (line = in.readLine()) != null; )
+        {
+          if ( !line.startsWith( "RESULT " ) ) continue;
+          String[] f = line.substring( 7 ).split( " " );
+          String pipeline = f[0].equals( p[0] ) ? p[0] : p[0] + ">" + f[0];  // Fell back
+          System.out.printf( "%-9s %-9s %-8s %-7s %7s %7s %7s %7s %9s%n", pipeline,
+                             f[1], f[2], f[3], f[4], f[5], f[6], f[7], f[8] );
+        }
+      }
+      if ( child.waitFor() != 0 )
+        System.out.printf( "%-9s failed, exit %d%n", p[0], child.exitValue() );
+    }
+  }
+
+  /**
+   * Load a trace into memory, so replaying it does no I/O
+   */
+  private RenderBench( Path file ) throws IOException
+  {
+    ByteBuffer b = ByteBuffer.wrap( Files.readAllBytes( file ) );
+    if ( b.getInt() != MAGIC || b.getInt() != VERSION )
+      throw new IOException( file + " is not a version " + VERSION + " trace" );
+    width  = b.getInt();
+    height = b.getInt();
+    int n  = b.getInt();
+    states = new ByteBuffer[n];
+    events = new ByteBuffer[n];
+    for ( int i = 0; i < n; i++ )
+    {
+      int length = b.getInt();
+      states[i] = slice( b, length );
+      events[i] = slice( b, (b.getShort() & 0xFFFF) * EVENT );
+    }
+  }
+
+  private static ByteBuffer slice( ByteBuffer b, int length )
+  {
+    ByteBuffer s = b.duplicate();
+    s.limit( b.position() + length );
+    b.position( b.position() + length );
+    return s.slice();
+  }
+
+  /**
+   * Replay the trace to each target at each quality, in this JVM
+   */
+  private void measure( int passes )
+  {
+    Debug.set( false );
+    String pipeline = pipeline();
+    List<String> targets = new ArrayList<>( Arrays.asList( "buffered" ) );
+    if ( !GraphicsEnvironment.isHeadless() ) targets.addAll( Arrays.asList( "volatile", "window" ) );
+
+    for ( String target : targets )
+      for ( int q = 0; q < QUALITY.length; q++ )
+      {
+        FrameStats stats = new FrameStats();
+        long ns = replay( target, q, passes, stats );
+        System.out.printf( "RESULT %s %s %s %d %.1f %.1f %.1f %.1f %.1f%n", pipeline, target,
+                           QUALITY[q], stats.getFrames(), stats.percentile( 50 ),
+                           stats.percentile( 90 ), stats.percentile( 99 ), stats.max(),
+                           stats.getFrames() / (ns / 1e9) );
+      }
+    System.exit( 0 );                          // Any window thread too
+  }
+
+  /**
+   * Draw every frame of the trace, after one pass to warm up
+   * @return Total time spent drawing the counted frames (ns)
+   */
+  private long replay( String target, int quality, int passes, FrameStats stats )
+  {
+    Target t = newTarget( target );
+    long total = 0;
+    try
+    {
+      for ( int pass = 0; pass <= passes; pass++ )
+      {
+        Model model = new Model( width, height );
+        GameRenderer renderer = new GameRenderer( width, height );
+        renderer.setFixedFrameTime( 1.0f / OfflineGame.FPS );
+        renderer.setQuality( quality );
+        for ( int i = 0; i < states.length; i++ )
+        {
+          ByteBuffer s = states[i].duplicate();
+          if ( !StateCodec.apply( s, model ) ) continue;
+          ByteBuffer e = events[i].duplicate();
+          while ( e.hasRemaining() )
+            renderer.getParticles().onEvent( e.getInt(), e.getFloat(), e.getFloat(), e.getInt() );
+          renderer.update( model );
+
+          long start = System.nanoTime();
+          t.draw( renderer );
+          long cost = System.nanoTime() - start;
+          if ( pass > 0 ) { stats.record( cost ); total += cost; }
+        }
+      }
+    } finally
+    {
+      t.close();
+    }
+    return total;
+  }
+
+  /**
+   * The Java2D pipeline in use, from the screen's configuration
+   */
+  private static String pipeline()
+  {
+    if ( GraphicsEnvironment.isHeadless() ) return "software";
+    String gc = config().getClass().getSimpleName();
+    if ( gc.startsWith( "GLX" ) ) return "opengl";
+    if ( gc.startsWith( "XR" ) )  return "xrender";
+    if ( gc.startsWith( "X11" ) ) return "software";
+    return gc;
+  }
+
+  private static GraphicsConfiguration config()
+  {
+    return GraphicsEnvironment.getLocalGraphicsEnvironment()
+                              .getDefaultScreenDevice().getDefaultConfiguration();
+  }
+
+  /**
+   * Somewhere to draw frames. Each draw waits until the frame is
+   *  really drawn, so the time is not just the time to queue it
+   */
+  private interface Target
+  {
+    void draw( GameRenderer renderer );
+    void close();
+  }
+
+  private Target newTarget( String name )
+  {
+    switch ( name )
+    {
+      case "volatile": return new Target() {
+        private VolatileImage image = config().createCompatibleVolatileImage( width, height );
+        public void draw( GameRenderer r )
+        {
+          if ( image.validate( config() ) == VolatileImage.IMAGE_INCOMPATIBLE )
+            image = config().createCompatibleVolatileImage( width, height );
+          Graphics2D g = image.createGraphics();
+          r.draw( g );
+          g.dispose();
+          Toolkit.getDefaultToolkit().sync();
+        }
+        public void close() { image.flush(); }
+      };
+
+      case "window": return new Target() {
+        private final Frame  frame  = new Frame( "RenderBench" );
+        private final Canvas canvas = new Canvas();
+        private final BufferStrategy strategy;
+        {
+          canvas.setIgnoreRepaint( true );
+          canvas.setSize( width, height );
+          frame.add( canvas );
+          frame.pack();
+          frame.setVisible( true );
+          canvas.createBufferStrategy( 2 );
+          strategy = canvas.getBufferStrategy();
+        }
+        public void draw( GameRenderer r )
+        {
+          do {
+            do {
+              Graphics2D g = (Graphics2D) strategy.getDrawGraphics();
+              r.draw( g );
+              g.dispose();
+            } while ( strategy.contentsRestored() );
+            strategy.show();
+          } while ( strategy.contentsLost() );
+          Toolkit.getDefaultToolkit().sync();
+        }
+        public void close() { frame.dispose(); }
+      };
+
+      default: return new Target() {
+        private final BufferedImage image = new BufferedImage( width, height, BufferedImage.TYPE_INT_RGB );
+        private final Graphics2D    g     = image.createGraphics();
+        public void draw( GameRenderer r ) { r.draw( g ); }
+        public void close()                { g.dispose(); }
+      };
+    }
+  }
+}
@@ -0,0 +1,71 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Report on the health of a long running game.
+ *  Every period prints one line with the frame time distribution,
+ *  heap in use and number of live threads, so growth over hours
+ *  can be seen by comparing lines.
+ */
+public class SoakMonitor
+{
+  private final FrameStats stats;
+  private final long periodMs;
+  private final long startMs = System.currentTimeMillis();
+
+  /**
+   * @param stats    Frame times recorded by the view
+   * @param periodMs Time between reports in milliseconds
+   */
+  public SoakMonitor( FrameStats stats, long periodMs )
+  {
+    this.stats    = stats;
+    this.periodMs = periodMs;
+  }
+
+  /**
+   * Report until the time is up, then exit the program
+   * @param durationMs How long to run for in milliseconds
+   */
+  public void runFor( long durationMs )
+  {
+    Thread t = new Thread( () -> run( durationMs ), "SoakMonitor" );
+    t.setDaemon(true);
+    t.start();
+  }
+
+  private void run( long durationMs )
+  {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    System.out.println( "soak: mins frames p50ms p95ms p99ms maxms heapMB threads peakThreads" );
+    try
+    {
+      while ( System.currentTimeMillis() - startMs < durationMs )
+      {
+        Thread.sleep( periodMs );
+        report( threads );
+      }
+    } catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+    report( threads );
+    System.exit(0);
+  }
+
+  private void report( ThreadMXBean threads )
+  {
+    Runtime rt = Runtime.getRuntime();
+    double heapMB = (rt.totalMemory() - rt.freeMemory()) / (1024.0 * 1024.0);
+    synchronized ( stats )
+    {
+      System.out.printf( "soak: %6.1f %7d %6.2f %6.2f %6.2f %7.2f %7.1f %4d %4d%n",
+                         (System.currentTimeMillis() - startMs) / 60000.0,
+                         stats.getFrames(), stats.percentile(50),
+                         stats.percentile(95), stats.percentile(99), stats.max(),
+                         heapMB, threads.getThreadCount(),
+                         threads.getPeakThreadCount() );
+      stats.reset();
+    }
+  }
+}
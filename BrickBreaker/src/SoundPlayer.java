@@ -0,0 +1,80 @@
+import javax.sound.sampled.*;
+import java.io.InputStream;
+
+/**
+ * Plays the game sounds in response to game events.
+ *  Runs in its own thread, so a slow sound system does not
+ *  hold up the game. Opening audio lines can be slow, so that is
+ *  done by the shared workers rather than the event thread.
+ */
+public class SoundPlayer implements EventBus.Handler
+{
+  private boolean musicPlaying = false;
+
+  @Override
+  public void onEvent( int type, float x, float y, int value )
+  {
+    switch ( type )
+    {
+      case GameEvent.LEVEL_START:
+        if ( !musicPlaying )
+        {
+          musicPlaying = true;
+          Workers.run( "Background music", () -> {
+            Clip clip = open( "bgMusic.wav" );       // Background Music play
+            if ( clip != null ) clip.loop(100);
+          } );
+          triggered( "bgMusic.wav", type );
+        }
+        break;
+      case GameEvent.BRICK_HIT:
+      case GameEvent.BRICK_DESTROYED:
+      case GameEvent.EXPLOSION:
+      case GameEvent.POWER_UP:
+        Workers.run( "Hit sound", () -> {
+          Clip clip = open( "hit.wav" );             // When brick is hit
+          if ( clip != null )
+          {
+            clip.addLineListener( e -> { if ( e.getType() == LineEvent.Type.STOP ) e.getLine().close(); } );
+            clip.start();
+          }
+        } );
+        triggered( "hit.wav", type );
+        break;
+    }
+  }
+
+  /**
+   * Record that a sound was started, if Flight Recorder wants to know
+   */
+  private void triggered( String sound, int cause )
+  {
+    Telemetry.SoundEvent e = new Telemetry.SoundEvent();
+    if ( e.shouldCommit() )
+    {
+      e.sound = sound; e.cause = GameEvent.name( cause );
+      e.commit();
+    }
+  }
+
+  /**
+   * Open a sound, decoded straight from the asset's mapped bytes
+   * @param file File name of the sound
+   * @return The clip ready to play or null if it cannot be opened
+   */
+  private Clip open( String file )
+  {
+    InputStream in = Assets.stream( file );
+    if ( in == null ) { System.out.println("Cannot read " + file); return null; }
+    try {
+      AudioInputStream stream = AudioSystem.getAudioInputStream( in );
+      AudioFormat format = stream.getFormat();
+      DataLine.Info info = new DataLine.Info(Clip.class, format);
+      Clip clip = (Clip) AudioSystem.getLine(info);
+      clip.open(stream);
+      return clip;
+    } catch (Exception e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,64 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Watches a game being played elsewhere.
+ *  Reads frames from a SpectatorServer and applies them to a local
+ *  model, which is drawn by the normal View.
+ *  The local model is never run, it only mirrors the remote game.
+ */
+public class SpectatorClient
+{
+  private final Model model;
+  private final InetSocketAddress address;
+
+  /**
+   * @param model   Local model to mirror the game into
+   * @param address Where the game is being served
+   */
+  public SpectatorClient( Model model, InetSocketAddress address )
+  {
+    this.model   = model;
+    this.address = address;
+  }
+
+  /**
+   * Read frames until the connection closes, in this thread
+   * @throws IOException if the connection fails
+   */
+  public void run() throws IOException
+  {
+    try ( SocketChannel ch = SocketChannel.open( address ) )
+    {
+      Debug.trace( "SpectatorClient: watching %s", address );
+      ByteBuffer length = ByteBuffer.allocate( 4 );
+      ByteBuffer body   = ByteBuffer.allocate( 1024 );
+      while ( true )
+      {
+        length.clear();
+        readFully( ch, length );
+        int n = length.getInt( 0 );
+        if ( n < 0 || n > StateCodec.MAX_FRAME )      // Lost track of the frames
+          throw new IOException( "Bad frame length " + n );
+        if ( body.capacity() < n ) body = ByteBuffer.allocate( n * 2 );
+        body.clear(); body.limit( n );
+        readFully( ch, body );
+        body.flip();
+        if ( StateCodec.apply( body, model ) )
+          model.modelChanged();               // Redraw
+      }
+    } catch (EOFException e)
+    {
+      Debug.trace( "SpectatorClient: game closed" );
+    }
+  }
+
+  private void readFully( SocketChannel ch, ByteBuffer b ) throws IOException
+  {
+    while ( b.hasRemaining() )
+      if ( ch.read( b ) < 0 ) throw new EOFException();
+  }
+}
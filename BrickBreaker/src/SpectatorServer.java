@@ -0,0 +1,266 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Sends the state of a live game to any number of spectators.
+ *  Each tick the game loop encodes a small frame, holding only what
+ *  changed since the last frame, and puts a read only copy of it in a
+ *  ring. A frame is never changed once it is in the ring, so the
+ *  sending thread can not see one half written.
+ *  A full key frame is sent every KEY_EVERY frames, when the level
+ *  changes and when a new spectator joins.
+ * A single thread sends the frames using a non blocking Selector,
+ *  so the game loop never waits for the network.
+ *  A spectator that is still sending the previous frame misses frames
+ *  until the next key frame, so nothing builds up for slow spectators.
+ * Frame layout, see StateCodec.
+ */
+public class SpectatorServer
+{
+  private static final int RING      = 64;   // Frames waiting to be sent
+  private static final int KEY_EVERY = 64;   // Frames between key frames
+
+  private final AtomicReferenceArray<ByteBuffer> slots = new AtomicReferenceArray<>( RING );
+  private final AtomicLong   published = new AtomicLong(0);
+  private final AtomicBoolean wakePending = new AtomicBoolean(false);
+  private volatile boolean keyWanted = true; // A spectator needs a key frame
+  private volatile int     clientCount = 0;
+
+  private final Selector            selector;
+  private final ServerSocketChannel server;
+  private final List<Client>        clients = new ArrayList<>();
+  private final int                 port;
+
+
+  // Producer (game loop) state
+  private int[]  changed   = new int[64];   // Bricks changed since last frame
+  private int    nChanged  = 0;
+  private int[]  mark      = new int[0];    // Frame each brick last marked in
+  private int    frameNo   = 1;
+  private List<GameObj> lastBricks = null;  // Detect a new level
+  private int    sinceKey  = 0;
+  private ByteBuffer scratch = ByteBuffer.allocate( 1024 ); // Frame being encoded
+
+  /**
+   * Spectator and what is left to send to it
+   */
+  private static class Client
+  {
+    final SocketChannel channel;
+    ByteBuffer out = ByteBuffer.allocate( 1024 );
+    boolean needKey = true;
+
+    Client( SocketChannel channel ) { this.channel = channel; out.flip(); }
+  }
+
+  /**
+   * Listen for spectators on a port
+   * @param port The port, on all local addresses, 0 for any free port
+   * @throws IOException if the port cannot be opened
+   */
+  public SpectatorServer( int port ) throws IOException
+  {
+    selector = Selector.open();
+    server   = ServerSocketChannel.open();
+    server.bind( new InetSocketAddress( port ) );
+    this.port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+    server.configureBlocking( false );
+    server.register( selector, SelectionKey.OP_ACCEPT );
+
+    Thread t = new Thread( this::run, "SpectatorServer" );
+    t.setDaemon(true);
+    t.start();
+    Debug.trace( "SpectatorServer: listening on port %d", this.port );
+  }
+
+  /**
+   * The port spectators connect to
+   * @return The port, the one chosen if asked for port 0
+   */
+  public int getPort()  { return port; }
+
+  /**
+   * Note that a brick changed this tick, called by the game loop
+   * @param index Index of the brick in the model's bricks
+   */
+  public void brickChanged( int index )
+  {
+    if ( index >= mark.length ) mark = java.util.Arrays.copyOf( mark, Math.max( index + 1, mark.length * 2 ) );
+    if ( mark[index] == frameNo ) return;     // Already in this frame
+    mark[index] = frameNo;
+    if ( nChanged == changed.length ) changed = java.util.Arrays.copyOf( changed, nChanged * 2 );
+    changed[nChanged++] = index;
+  }
+
+  /**
+   * Write a frame with the current state of the model,
+   *  called by the game loop while it holds the model lock
+   * @param model The model
+   */
+  public void publish( Model model )
+  {
+    List<GameObj> bricks = model.getBricks();
+    boolean key = keyWanted || bricks != lastBricks || ++sinceKey >= KEY_EVERY;
+    if ( key ) { keyWanted = false; lastBricks = bricks; sinceKey = 0; }
+
+    int need = StateCodec.size( model, key ? bricks.size() : nChanged );
+    if ( scratch.capacity() < need ) scratch = ByteBuffer.allocate( need * 2 );
+    scratch.clear();
+    StateCodec.encode( scratch, model, key, changed, nChanged );
+    scratch.flip();
+
+    // Publish a copy that nothing will write to again
+    ByteBuffer frame = ByteBuffer.allocate( scratch.remaining() );
+    frame.put( scratch );
+    frame.flip();
+    long seq = published.get();
+    slots.set( (int) (seq % RING), frame.asReadOnlyBuffer() );
+
+    nChanged = 0;
+    frameNo++;
+    published.set( seq + 1 );
+    if ( clientCount > 0 && wakePending.compareAndSet( false, true ) )
+      selector.wakeup();
+  }
+
+  private void run()
+  {
+    long next = 0;                               // Next frame to send
+    try
+    {
+      while ( server.isOpen() )
+      {
+        selector.select();
+        wakePending.set( false );
+
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while ( it.hasNext() )
+        {
+          SelectionKey k = it.next(); it.remove();
+          if ( !k.isValid() ) continue;
+          if ( k.isAcceptable() ) accept();
+          else if ( k.isReadable() ) readOrClose( k );
+          else if ( k.isWritable() ) send( k, (Client) k.attachment() );
+        }
+
+        // Pass on each new frame still in the ring
+        long avail = published.get();
+        if ( avail - next >= RING )              // Fell behind the game
+        {
+          next = avail - 1;
+          for ( Client c : clients ) c.needKey = true;
+        }
+        for ( ; next < avail; next++ )
+        {
+          ByteBuffer frame = slots.get( (int) (next % RING) );
+          if ( published.get() - next >= RING )  // Replaced by a later frame
+          {
+            for ( Client c : clients ) c.needKey = true;
+            continue;
+          }
+          broadcast( frame );
+        }
+      }
+    } catch (IOException e)
+    {
+      Debug.error("SpectatorServer.run - Error\n%s", e.getMessage() );
+    }
+  }
+
+  private void accept() throws IOException
+  {
+    SocketChannel ch = server.accept();
+    if ( ch == null ) return;
+    ch.configureBlocking( false );
+    ch.socket().setTcpNoDelay( true );
+    Client c = new Client( ch );
+    ch.register( selector, SelectionKey.OP_READ, c );
+    clients.add( c );
+    clientCount = clients.size();
+    keyWanted = true;
+    Debug.trace( "SpectatorServer: %s joined, %d watching", ch.getRemoteAddress(), clientCount );
+  }
+
+  /**
+   * Spectators send nothing, so a read means they have gone
+   */
+  private void readOrClose( SelectionKey k )
+  {
+    Client c = (Client) k.attachment();
+    try
+    {
+      ByteBuffer junk = ByteBuffer.allocate( 64 );
+      if ( c.channel.read( junk ) >= 0 ) return;
+    } catch (IOException e) { /* Treat as gone */ }
+    drop( k, c );
+  }
+
+  private void drop( SelectionKey k, Client c )
+  {
+    k.cancel();
+    try { c.channel.close(); } catch (IOException e) { /* Already gone */ }
+    clients.remove( c );
+    clientCount = clients.size();
+  }
+
+  /**
+   * Give a frame to every spectator that is ready for it
+   */
+  private void broadcast( ByteBuffer frame )
+  {
+    boolean key = StateCodec.isKey( frame );
+    for ( int i = clients.size() - 1; i >= 0; i-- )
+    {
+      Client c = clients.get(i);
+      if ( c.out.hasRemaining() ) { c.needKey = true; continue; }   // Slow
+      if ( c.needKey && !key ) continue;                            // Wait for key
+      c.needKey = false;
+      if ( c.out.capacity() < frame.remaining() ) c.out = ByteBuffer.allocate( frame.remaining() * 2 );
+      c.out.clear(); c.out.put( frame.duplicate() ); c.out.flip();
+      send( c.channel.keyFor( selector ), c );
+    }
+  }
+
+  /**
+   * Send as much as the socket will take, asking to be told
+   *  when it can take more if some is left
+   */
+  private void send( SelectionKey k, Client c )
+  {
+    try
+    {
+      c.channel.write( c.out );
+      k.interestOps( c.out.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                                          : SelectionKey.OP_READ );
+    } catch (IOException e)
+    {
+      drop( k, c );
+    }
+  }
+
+  /**
+   * Stop listening and disconnect all spectators
+   */
+  public void close()
+  {
+    try
+    {
+      server.close();
+      selector.wakeup();
+    } catch (IOException e)
+    {
+      Debug.error("SpectatorServer.close - Error\n%s", e.getMessage() );
+    }
+  }
+}
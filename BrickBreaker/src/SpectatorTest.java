@@ -0,0 +1,253 @@
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the frames sent to spectators, first StateCodec on its own
+ *  and then a SpectatorServer and SpectatorClient talking over loopback
+ *    java SpectatorTest
+ * Prints each failure and exits with 1 if there were any, so it can
+ *  be run as a check on a machine with no screen.
+ */
+public class SpectatorTest
+{
+  private static final int WAIT_MS = 2000;  // Longest wait for a frame to arrive
+
+  private static int failures = 0;
+
+  public static void main( String args[] ) throws Exception
+  {
+    Debug.set( false );                     // Not every bat move
+    roundTrip();
+    badFrames();
+    loopback();
+    System.out.printf( "SpectatorTest: %d failures%n", failures );
+    System.exit( failures > 0 ? 1 : 0 );    // The server thread may still be running
+  }
+
+  private static void check( boolean ok, String what, Object... args )
+  {
+    if ( ok ) return;
+    failures++;
+    System.out.printf( "FAIL " + what + "%n", args );
+  }
+
+  /**
+   * A model part way through a level, with a power up falling
+   */
+  private static Model playing( int levelNum, int ticks ) throws InterruptedException
+  {
+    Model m = new Model( Main.W, Main.H );
+    m.setLevel( levelNum );
+    m.createGameObjects();
+    m.setGameState( 1 );
+    GameLoop.Session s = m.newOfflineGame();
+    s.begin();
+    for ( int t = 0; t < ticks; t++ ) step( m, s );
+    m.getDrops().add( new PowerUp( PowerUp.SLOW_BALL, 200, 300 ) );
+    return m;
+  }
+
+  private static boolean step( Model m, GameLoop.Session s ) throws InterruptedException
+  {
+    int steer = Autopilot.steer( m );
+    if ( steer != 0 ) m.moveBat( steer );
+    return s.step();
+  }
+
+  private static ByteBuffer encode( Model m, boolean key, int[] changed, int n )
+  {
+    ByteBuffer b = ByteBuffer.allocate( StateCodec.size( m, key ? m.getBricks().size() : n ) );
+    StateCodec.encode( b, m, key, changed, n );
+    check( b.position() == b.capacity(), "size() gave %d for a frame of %d", b.capacity(), b.position() );
+    b.flip();
+    return b;
+  }
+
+  private static boolean apply( ByteBuffer frame, Model m )
+  {
+    ByteBuffer b = frame.duplicate();
+    check( b.getInt() == b.remaining(), "frame length is wrong" );
+    return StateCodec.apply( b, m );
+  }
+
+  /**
+   * What differs between a game and its mirror
+   * @return null if they are the same
+   */
+  private static String differences( Model a, Model b )
+  {
+    if ( b.getBricks() == null ) return "level";         // No key frame yet
+    if ( a.getGameState() != b.getGameState() ) return "state";
+    if ( a.getLevelNum() != b.getLevelNum() ) return "level";
+    if ( a.getPlayerLives() != b.getPlayerLives() ) return "lives";
+    if ( a.getScore() != b.getScore() ) return "score";
+    if ( !samePlace( a.getBall(), b.getBall() ) ) return "ball";
+    if ( !samePlace( a.getBat(), b.getBat() ) || a.getBat().getWidth() != b.getBat().getWidth() )
+      return "bat";
+    List<GameObj> x = a.getBricks(), y = b.getBricks();
+    if ( y == null || x.size() != y.size() ) return "brick count";
+    for ( int i = 0; i < x.size(); i++ )
+      if ( x.get(i).isVisible() != y.get(i).isVisible() ||
+           x.get(i).getHitCount() != y.get(i).getHitCount() ) return "brick " + i;
+    List<PowerUp> p = a.getDrops(), q = b.getDrops();
+    if ( p.size() != q.size() ) return "power up count";
+    for ( int i = 0; i < p.size(); i++ )
+      if ( p.get(i).getKind() != q.get(i).getKind() || !samePlace( p.get(i), q.get(i) ) )
+        return "power up " + i;
+    return null;
+  }
+
+  private static boolean samePlace( GameObj a, GameObj b )
+  {
+    return a.getX() == b.getX() && a.getY() == b.getY();
+  }
+
+  /**
+   * A key frame makes a copy of the game, a delta frame of the
+   *  bricks changed since then brings the copy up to date
+   */
+  private static void roundTrip() throws InterruptedException
+  {
+    Model game = playing( 2, 500 );
+    Model mirror = new Model( Main.W, Main.H );
+    check( apply( encode( game, true, null, 0 ), mirror ), "key frame not applied" );
+    String diff = differences( game, mirror );
+    check( diff == null, "after key frame the %s differs", diff );
+
+    List<GameObj> bricks = game.getBricks();
+    int[] hits = new int[ bricks.size() ];
+    boolean[] shown = new boolean[ bricks.size() ];
+    for ( int i = 0; i < hits.length; i++ )
+      { hits[i] = bricks.get(i).getHitCount(); shown[i] = bricks.get(i).isVisible(); }
+
+    GameLoop.Session s = game.newOfflineGame();
+    s.begin();
+    for ( int t = 0; t < 2000 && step( game, s ); t++ ) {}
+    game.getDrops().clear();
+    int[] changed = new int[ hits.length ];
+    int n = 0;
+    for ( int i = 0; i < hits.length; i++ )
+      if ( hits[i] != bricks.get(i).getHitCount() || shown[i] != bricks.get(i).isVisible() )
+        changed[n++] = i;
+    check( n > 0, "no bricks changed, nothing to send in a delta" );
+    check( apply( encode( game, false, changed, n ), mirror ), "delta frame not applied" );
+    diff = differences( game, mirror );
+    check( diff == null, "after delta frame the %s differs", diff );
+  }
+
+  /**
+   * Frames that are from another version, need a level the spectator
+   *  does not have, or are damaged, are turned down without throwing
+   */
+  private static void badFrames() throws InterruptedException
+  {
+    Model game = playing( 3, 300 );
+    ByteBuffer key = encode( game, true, null, 0 );
+
+    ByteBuffer old = ByteBuffer.allocate( key.remaining() ).put( key.duplicate() );
+    old.put( 5, (byte) (StateCodec.VERSION - 1) );
+    old.flip();
+    check( !apply( old, new Model( Main.W, Main.H ) ), "frame of another version applied" );
+
+    int[] changed = { 0 };
+    check( !apply( encode( game, false, changed, 1 ), new Model( Main.W, Main.H ) ),
+           "delta frame applied with no level" );
+
+    Random r = new Random( 1 );
+    Model mirror = new Model( Main.W, Main.H );
+    List<ByteBuffer> frames = new ArrayList<>();
+    frames.add( key );
+    frames.add( encode( game, false, changed, 1 ) );
+    for ( int i = 0; i < 20000 && failures < 10; i++ )
+    {
+      ByteBuffer f = frames.get( r.nextInt( frames.size() ) );
+      ByteBuffer b = ByteBuffer.allocate( f.remaining() ).put( f.duplicate() );
+      for ( int k = 1 + r.nextInt(4); k > 0; k-- )
+        b.put( 4 + r.nextInt( b.capacity() - 4 ), (byte) r.nextInt() );
+      b.position( 4 );
+      b.limit( 4 + r.nextInt( b.capacity() - 3 ) );   // Sometimes cut short
+      try
+      {
+        synchronized ( Model.class ) { StateCodec.apply( b, mirror ); }
+      } catch (RuntimeException e)
+      {
+        check( false, "damaged frame %d threw %s", i, e );
+      }
+    }
+  }
+
+  /**
+   * Play a game with a spectator watching over loopback, after each
+   *  tick the spectator's copy must catch up with the game. Most ticks
+   *  send a delta frame, a new level or every 64th tick a key frame
+   */
+  private static void loopback() throws Exception
+  {
+    Model game = new Model( Main.W, Main.H );
+    SpectatorServer server = new SpectatorServer( 0 );
+    game.setSpectators( server );
+    Model mirror = new Model( Main.W, Main.H );
+    InetSocketAddress address = new InetSocketAddress( "127.0.0.1", server.getPort() );
+    Thread client = new Thread( () -> {
+      try { new SpectatorClient( mirror, address ).run(); }
+      catch (Exception e) { check( false, "client failed %s", e ); }
+    }, "SpectatorTest client" );
+    client.setDaemon( true );
+    client.start();
+
+    int ticks = 0, bricksGone = 0;
+    for ( int levelNum = 1; levelNum <= 2 && failures == 0; levelNum++ )
+    {
+      game.setLevel( levelNum );
+      game.createGameObjects();
+      game.setGameState( 1 );
+      GameLoop.Session s = game.newOfflineGame();
+      s.begin();
+      // Until the spectator has joined and had its first key frame
+      boolean joined = false;
+      for ( long end = System.currentTimeMillis() + WAIT_MS; !joined && System.currentTimeMillis() < end; )
+      {
+        step( game, s ); ticks++;
+        joined = caughtUp( game, mirror, 20 ) == null;
+      }
+      check( joined, "spectator did not join level %d", levelNum );
+
+      for ( int t = 0; t < 600 && joined; t++, ticks++ )
+      {
+        if ( t == 100 )
+          synchronized ( Model.class )
+            { game.getDrops().add( new PowerUp( PowerUp.WIDE_BAT, 300, 200 ) ); }
+        boolean more = step( game, s );
+        String diff = caughtUp( game, mirror, WAIT_MS );
+        if ( diff != null )
+        {
+          check( false, "level %d tick %d spectator %s differs", levelNum, t, diff );
+          break;
+        }
+        if ( !more ) break;
+      }
+      for ( GameObj b : game.getBricks() ) if ( !b.isVisible() ) bricksGone++;
+    }
+    check( bricksGone > 0, "no bricks destroyed in %d ticks", ticks );
+    server.close();
+  }
+
+  /**
+   * Wait for the spectator's copy to match the game
+   * @return null once it matches, or what still differed when the wait ran out
+   */
+  private static String caughtUp( Model game, Model mirror, int waitMs ) throws InterruptedException
+  {
+    long end = System.currentTimeMillis() + waitMs;
+    while ( true )
+    {
+      String diff;
+      synchronized ( Model.class ) { diff = differences( game, mirror ); }
+      if ( diff == null || System.currentTimeMillis() > end ) return diff;
+      Thread.sleep( 1 );
+    }
+  }
+}
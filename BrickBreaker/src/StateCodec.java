@@ -0,0 +1,184 @@
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Binary frame holding the state of a game, or the part of it that
+ *  changed, as sent from SpectatorServer to SpectatorClient.
+ * Layout (big endian)
+ *   int   length of the rest of the frame
+ *   byte  KEY or DELTA
+ *   byte  VERSION
+ *   byte  game state, byte level number, byte lives
+ *   int   score
+ *   float ball x, ball y, bat x, bat y, bat width
+ *   int   number of bricks in the level
+ *   int   number of bricks that follow, then for each
+ *     int  brick index
+ *     byte hit count, top bit set if visible
+ *   short number of falling power ups, then for each
+ *     byte  kind
+ *     float x, y
+ * A KEY frame lists every brick, a DELTA frame only those that changed.
+ *  Every frame lists all the falling power ups, there are only a few.
+ * Frames come from the network, so apply() checks a frame fits before
+ *  using any of it.
+ */
+final class StateCodec
+{
+  public static final byte DELTA  = 0;
+  public static final byte KEY    = 1;
+  public static final byte VERSION = 2; // 1 had no bat width or power ups
+  public static final int  HEADER = 43;  // Bytes not in the bricks or power ups
+  public static final int  BRICK  = 5;   // Bytes per brick
+  public static final int  DROP   = 9;   // Bytes per power up
+  public static final int  MAX_FRAME = 1 << 20; // Longest frame accepted
+
+  private static final int VISIBLE = 0x80;
+
+  private StateCodec() {}
+
+  /**
+   * Write a frame, the model lock must be held
+   * @param b        Buffer to write to, must have room
+   * @param model    The model
+   * @param key      true for a key frame of all bricks
+   * @param changed  Indexes of bricks changed, for a delta frame
+   * @param nChanged Number of entries used in changed
+   */
+  public static void encode( ByteBuffer b, Model model, boolean key,
+                             int[] changed, int nChanged )
+  {
+    List<GameObj> bricks = model.getBricks();
+    List<PowerUp> drops  = model.getDrops();
+    GameObj ball = model.getBall(), bat = model.getBat();
+    int n = key ? bricks.size() : nChanged;
+    int start = b.position();
+
+    b.putInt( 0 );                           // Length, filled in below
+    b.put( key ? KEY : DELTA );
+    b.put( VERSION );
+    b.put( (byte) model.getGameState() );
+    b.put( (byte) model.getLevelNum() );
+    b.put( (byte) model.getPlayerLives() );
+    b.putInt( model.getScore() );
+    b.putFloat( ball.getX() ).putFloat( ball.getY() );
+    b.putFloat( bat.getX() ).putFloat( bat.getY() ).putFloat( bat.getWidth() );
+    b.putInt( bricks.size() );
+    b.putInt( n );
+    for ( int i = 0; i < n; i++ )
+    {
+      int index = key ? i : changed[i];
+      GameObj brick = bricks.get( index );
+      b.putInt( index );
+      b.put( (byte) (brick.getHitCount() | (brick.isVisible() ? VISIBLE : 0)) );
+    }
+    b.putShort( (short) drops.size() );
+    for ( PowerUp p : drops )
+      b.put( (byte) p.getKind() ).putFloat( p.getX() ).putFloat( p.getY() );
+    b.putInt( start, b.position() - start - 4 );
+  }
+
+  /**
+   * Bytes needed for a frame
+   * @param model  The model, the model lock must be held
+   * @param bricks Number of bricks in the frame
+   * @return Size of the frame including its length
+   */
+  public static int size( Model model, int bricks )
+  {
+    return HEADER + BRICK * bricks + DROP * model.getDrops().size();
+  }
+
+  /**
+   * Is the frame a key frame
+   * @param frame Frame, positioned at its length
+   * @return true if a key frame
+   */
+  public static boolean isKey( ByteBuffer frame )
+  {
+    return frame.get( frame.position() + 4 ) == KEY;
+  }
+
+  /**
+   * Apply a frame to a model, building the level if it is new
+   * @param b     Frame, positioned after its length
+   * @param model The model to change
+   * @return false if the frame could not be used (a delta with no level
+   *         yet, another version, or a frame that is short or names bricks
+   *         or power ups that do not exist)
+   */
+  public static boolean apply( ByteBuffer b, Model model )
+  {
+    if ( b.remaining() < HEADER - 4 ) return false;
+    boolean key   = b.get() == KEY;
+    if ( b.get() != VERSION ) return false;
+    int gameState = b.get(), levelNum = b.get(), lives = b.get();
+    int score     = b.getInt();
+    float ballX = b.getFloat(), ballY = b.getFloat();
+    float batX  = b.getFloat(), batY  = b.getFloat(), batWidth = b.getFloat();
+    int brickCount = b.getInt();
+    int n = b.getInt();
+    if ( brickCount < 0 || n < 0 || n > brickCount ||
+         b.remaining() < (long) n * BRICK + 2 ) return false;
+    int at = b.position();
+    for ( int i = 0; i < n; i++, at += BRICK )
+    {
+      int index = b.getInt( at );
+      if ( index < 0 || index >= brickCount ) return false;
+    }
+    int nDrops = b.getShort( at );
+    at += 2;
+    if ( nDrops < 0 || b.limit() - at < nDrops * DROP ) return false;
+    for ( int i = 0; i < nDrops; i++ )
+    {
+      int kind = b.get( at + i * DROP );
+      if ( kind < 0 || kind >= PowerUp.KINDS ) return false;
+    }
+    if ( !( batWidth > 0 && batWidth < Main.W ) ) return false;
+
+    synchronized ( Model.class )
+    {
+      List<GameObj> bricks = model.getBricks();
+      boolean sameLevel = bricks != null && model.getLevelNum() == levelNum &&
+                          bricks.size() == brickCount;
+      if ( !sameLevel )
+      {
+        if ( !key || levelNum < 1 || levelNum > Model.LAST_LEVEL ) return false;
+        model.setLevel( levelNum );
+        model.createGameObjects();
+        bricks = model.getBricks();
+        if ( bricks.size() != brickCount ) return false;   // Not the same level
+      }
+
+      model.getBall().setPosition( ballX, ballY );
+      model.getBat().setPosition( batX, batY );
+      model.getBat().setWidth( batWidth );
+      for ( int i = 0; i < n; i++ )
+      {
+        int index = b.getInt();
+        int state = b.get() & 0xFF;
+        GameObj brick = bricks.get( index );
+        brick.setHitCount( state & ~VISIBLE );
+        brick.setVisibility( (state & VISIBLE) != 0 );
+      }
+
+      // Power ups still falling are moved, so they are drawn moving
+      List<PowerUp> drops = model.getDrops();
+      b.getShort();
+      for ( int i = 0; i < nDrops; i++ )
+      {
+        int kind = b.get();
+        float x = b.getFloat(), y = b.getFloat();
+        if ( i < drops.size() && drops.get(i).getKind() == kind )
+          drops.get(i).setPosition( x, y );
+        else if ( i < drops.size() )
+          drops.set( i, new PowerUp( kind, x + PowerUp.WIDTH/2, y + PowerUp.HEIGHT/2 ) );
+        else
+          drops.add( new PowerUp( kind, x + PowerUp.WIDTH/2, y + PowerUp.HEIGHT/2 ) );
+      }
+      while ( drops.size() > nDrops ) drops.remove( drops.size() - 1 );
+      model.setRemoteState( gameState, lives, score );
+    }
+    return true;
+  }
+}
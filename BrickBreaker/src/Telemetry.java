@@ -0,0 +1,104 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder events emitted by the game.
+ *  All are disabled unless a recording turns them on, for example
+ *  with the settings in jfr/brickbreaker.jfc
+ *    java -XX:StartFlightRecording=settings=jfr/brickbreaker.jfc,filename=game.jfr Main
+ *  When disabled, begin() and commit() do nothing and the JIT
+ *  removes the event objects, so they can be left in the code.
+ * Summarise a recording with JfrSummary.
+ */
+public final class Telemetry
+{
+  private Telemetry() {}
+
+  /**
+   * One tick of the game loop, while the model lock is held
+   */
+  @Name("brickbreaker.Tick")
+  @Label("Game Tick")
+  @Category("BrickBreaker")
+  @Enabled(false)
+  @StackTrace(false)
+  @Threshold("1 ms")
+  public static class TickEvent extends Event
+  {
+    @Label("Level") public int level;
+    @Label("Bricks Tested") public int bricksTested;
+    @Label("Hits") public int hits;
+  }
+
+  /**
+   * The ball tested against the bat and every brick
+   */
+  @Name("brickbreaker.CollisionPass")
+  @Label("Collision Pass")
+  @Category("BrickBreaker")
+  @Enabled(false)
+  @StackTrace(false)
+  @Threshold("500 us")
+  public static class CollisionPassEvent extends Event
+  {
+    @Label("Bricks Tested") public int bricksTested;
+    @Label("Hits") public int hits;
+  }
+
+  /**
+   * One frame drawn by GameRenderer.draw, with time per layer
+   */
+  @Name("brickbreaker.Frame")
+  @Label("Frame")
+  @Category("BrickBreaker")
+  @Enabled(false)
+  @StackTrace(false)
+  @Threshold("8 ms")
+  public static class FrameEvent extends Event
+  {
+    @Label("Game State") public int gameState;
+    @Label("Quality") @Description("Frame governor quality level") public int quality;
+    @Label("Background") @Timespan(Timespan.NANOSECONDS) public long background;
+    @Label("Ball And Bat") @Timespan(Timespan.NANOSECONDS) public long sprites;
+    @Label("Bricks") @Timespan(Timespan.NANOSECONDS) public long bricks;
+    @Label("HUD") @Timespan(Timespan.NANOSECONDS) public long hud;
+    @Label("Particles") @Timespan(Timespan.NANOSECONDS) public long particles;
+  }
+
+  /**
+   * A sound started by the audio consumer
+   */
+  @Name("brickbreaker.Sound")
+  @Label("Sound Trigger")
+  @Category("BrickBreaker")
+  @Enabled(false)
+  @StackTrace(false)
+  @Threshold("0 ms")
+  public static class SoundEvent extends Event
+  {
+    @Label("Sound") public String sound;
+    @Label("Cause") public String cause;
+  }
+
+  /**
+   * A level built and its game objects created
+   */
+  @Name("brickbreaker.LevelLoad")
+  @Label("Level Load")
+  @Category("BrickBreaker")
+  @Enabled(false)
+  @Threshold("0 ms")
+  public static class LevelLoadEvent extends Event
+  {
+    @Label("Level") public int level;
+    @Label("Bricks") public int bricks;
+    @Label("Prefetched") @Description("Built in the background before it was needed") public boolean prefetched;
+  }
+}
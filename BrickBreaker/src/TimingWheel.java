@@ -0,0 +1,201 @@
+import java.util.Arrays;
+
+/**
+ * Runs actions a number of ticks in the future, driven by the game's
+ *  own tick rather than the clock, so an action always happens on the
+ *  tick it was due, however fast or slow the ticks are.
+ * Timers are kept in LEVELS wheels of SLOTS slots. The first wheel
+ *  has a slot per tick, the next a slot per SLOTS ticks and so on.
+ *  A timer is put in the slot for its due time on the smallest wheel
+ *  that reaches that far. Each time a wheel goes round, the next slot
+ *  of the wheel above is emptied into it. Scheduling and cancelling
+ *  are O(1), and a tick only looks at the timers that are due or
+ *  move down a wheel, never at every timer.
+ * Timers are held in fixed size arrays, linked into their slot's list
+ *  by index, so no objects are created as timers come and go.
+ * Not thread safe, used by the game loop with the model lock held.
+ */
+public class TimingWheel
+{
+  /**
+   * Told about each timer as it is due
+   */
+  public interface Expired
+  {
+    void onTimer( int action, int arg );
+  }
+
+  private static final int BITS   = 6;
+  private static final int SLOTS  = 1 << BITS;        // Slots per wheel
+  private static final int LEVELS = 4;                // Reach SLOTS^4 ticks
+  private static final int INDEX  = 20;               // Bits of a handle for the index
+  private static final int GEN    = (1 << (31 - INDEX)) - 1; // Generation bits, keeps handles >= 0
+  private static final int NONE   = -1;
+
+  private final int[]  head = new int[LEVELS * SLOTS]; // First timer in each slot
+  private final int[]  next, prev;                     // Links within a slot
+  private final int[]  slot;                           // Slot holding a timer, NONE if free
+  private final long[] due;                            // Tick a timer is due
+  private final int[]  action, arg;
+  private final int[]  generation;                     // Changes when reused
+  private int  free;                                   // First unused timer
+  private long now = 0;                                // Ticks so far
+  private int  count = 0;                              // Timers scheduled
+
+  /**
+   * @param capacity Most timers that can be scheduled at once, up to 2^20
+   */
+  public TimingWheel( int capacity )
+  {
+    if ( capacity <= 0 || capacity > 1 << INDEX )
+      throw new IllegalArgumentException( "Capacity " + capacity );
+    next = new int[capacity]; prev = new int[capacity];
+    slot = new int[capacity]; due  = new long[capacity];
+    action = new int[capacity]; arg = new int[capacity];
+    generation = new int[capacity];
+    clear();
+  }
+
+  /**
+   * Cancel every timer and start counting ticks from 0 again
+   */
+  public void clear()
+  {
+    Arrays.fill( head, NONE );
+    for ( int i = 0; i < next.length; i++ )
+    {
+      next[i] = i + 1;
+      slot[i] = NONE;
+      generation[i] = (generation[i] + 1) & GEN;   // Old handles no longer match
+    }
+    next[next.length - 1] = NONE;
+    free  = 0;
+    now   = 0;
+    count = 0;
+  }
+
+  /**
+   * Run an action after a number of ticks
+   * @param ticks  Ticks from now, at least 1
+   * @param action What to do, passed to Expired
+   * @param arg    Passed to Expired
+   * @return Handle to cancel the timer, or -1 if the wheel is full
+   */
+  public int schedule( int ticks, int action, int arg )
+  {
+    if ( free == NONE ) return -1;
+    int t = free;
+    free = next[t];
+    due[t] = now + Math.max( 1, ticks );
+    this.action[t] = action; this.arg[t] = arg;
+    insert( t );
+    count++;
+    return (generation[t] << INDEX) | t;
+  }
+
+  /**
+   * Stop a timer from happening
+   * @param handle From schedule()
+   * @return false if it has already happened or been cancelled
+   */
+  public boolean cancel( int handle )
+  {
+    int t = live( handle );
+    if ( t == NONE ) return false;
+    unlink( t );
+    release( t );
+    return true;
+  }
+
+  /**
+   * Ticks until a timer is due
+   * @param handle From schedule()
+   * @return Ticks left, or -1 if it has happened or been cancelled
+   */
+  public int remaining( int handle )
+  {
+    int t = live( handle );
+    return t == NONE ? -1 : (int) (due[t] - now);
+  }
+
+  /**
+   * Number of timers waiting
+   * @return count of scheduled timers
+   */
+  public int size()            { return count; }
+
+  /**
+   * Move on one tick and run every timer now due
+   * @param expired Told about each timer due, may schedule
+   *                or cancel other timers
+   */
+  public void advance( Expired expired )
+  {
+    now++;
+    for ( int level = 1; level < LEVELS; level++ )   // Wheels that went round
+    {
+      if ( ( now & ( (1L << (BITS * level)) - 1 ) ) != 0 ) break;
+      int s = level * SLOTS + (int) ( (now >>> (BITS * level)) & (SLOTS - 1) );
+      int t = head[s];
+      head[s] = NONE;
+      while ( t != NONE )                            // Move down a wheel
+      {
+        int n = next[t];
+        insert( t );
+        t = n;
+      }
+    }
+
+    int s = (int) (now & (SLOTS - 1));
+    int t;
+    while ( (t = head[s]) != NONE )                  // Taken one at a time, so
+    {                                                //  expired may cancel others
+      unlink( t );
+      int a = action[t], b = arg[t];
+      release( t );
+      expired.onTimer( a, b );
+    }
+  }
+
+  /**
+   * Put a timer in the slot for its due time
+   */
+  private void insert( int t )
+  {
+    long ticks = due[t] - now;
+    int  level = 0;
+    while ( level < LEVELS - 1 && ticks >= (1L << (BITS * (level + 1))) ) level++;
+    int s = level * SLOTS + (int) ( (due[t] >>> (BITS * level)) & (SLOTS - 1) );
+    if ( level == LEVELS - 1 && ticks >= (1L << (BITS * LEVELS)) )  // Beyond reach, go round again
+      s = level * SLOTS + (int) ( ((now >>> (BITS * level)) - 1) & (SLOTS - 1) );
+    slot[t] = s;
+    prev[t] = NONE;
+    next[t] = head[s];
+    if ( head[s] != NONE ) prev[head[s]] = t;
+    head[s] = t;
+  }
+
+  private void unlink( int t )
+  {
+    int s = slot[t];
+    if ( prev[t] != NONE ) next[prev[t]] = next[t]; else head[s] = next[t];
+    if ( next[t] != NONE ) prev[next[t]] = prev[t];
+    slot[t] = NONE;
+  }
+
+  private void release( int t )
+  {
+    generation[t] = (generation[t] + 1) & GEN;
+    next[t] = free;
+    free = t;
+    count--;
+  }
+
+  private int live( int handle )
+  {
+    if ( handle < 0 ) return NONE;
+    int t = handle & ((1 << INDEX) - 1);
+    if ( t >= slot.length || slot[t] == NONE ) return NONE;
+    return generation[t] == (handle >>> INDEX) ? t : NONE;
+  }
+}
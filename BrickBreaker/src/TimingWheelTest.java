@@ -0,0 +1,113 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks TimingWheel against a plain map of due ticks
+ *    java TimingWheelTest
+ * Prints each failure and exits with 1 if there were any, so it can
+ *  be run as a check on a machine with no screen.
+ */
+public class TimingWheelTest
+{
+  private static int failures = 0;
+
+  public static void main( String args[] )
+  {
+    exactTicks();
+    manyClears();
+    randomTimers();
+    System.out.printf( "TimingWheelTest: %d failures%n", failures );
+    if ( failures > 0 ) System.exit( 1 );
+  }
+
+  private static void check( boolean ok, String what, Object... args )
+  {
+    if ( ok ) return;
+    failures++;
+    System.out.printf( "FAIL " + what + "%n", args );
+  }
+
+  /**
+   * Timers either side of each wheel boundary happen on the tick due
+   */
+  private static void exactTicks()
+  {
+    int[] delays = { 1, 2, 63, 64, 65, 4095, 4096, 4097, 262143, 262144, 300000 };
+    TimingWheel w = new TimingWheel( delays.length );
+    for ( int i = 0; i < delays.length; i++ ) w.schedule( delays[i], 0, i );
+    long[] tick = { 0 };
+    int[]  fired = { 0 };
+    while ( tick[0] < 300000 )
+    {
+      tick[0]++;
+      w.advance( (action, i) -> {
+        fired[0]++;
+        check( delays[i] == tick[0], "delay %d fired on tick %d", delays[i], tick[0] );
+      } );
+    }
+    check( fired[0] == delays.length, "%d of %d timers fired", fired[0], delays.length );
+    check( w.size() == 0, "%d timers left", w.size() );
+  }
+
+  /**
+   * Handles stay valid and distinct however many times the wheel
+   *  is cleared, as Model does at the start of every level
+   */
+  private static void manyClears()
+  {
+    TimingWheel w = new TimingWheel( 4 );
+    for ( int round = 0; round < 10000; round++ )
+    {
+      w.clear();
+      int h = w.schedule( 10, 0, round );
+      check( h >= 0, "round %d schedule gave %d", round, h );
+      check( w.remaining( h ) == 10, "round %d remaining %d", round, w.remaining( h ) );
+      check( w.cancel( h ), "round %d cancel failed", round );
+      check( !w.cancel( h ), "round %d cancelled twice", round );
+      int again = w.schedule( 5, 0, round );
+      check( again >= 0 && again != h, "round %d reschedule gave %d", round, again );
+      check( !w.cancel( h ), "round %d old handle cancelled new timer", round );
+      if ( failures > 10 ) return;
+    }
+  }
+
+  /**
+   * Random schedules and cancels, each timer must fire once on its tick
+   */
+  private static void randomTimers()
+  {
+    Random r = new Random( 1 );
+    TimingWheel w = new TimingWheel( 5000 );
+    Map<Integer,Long>    due     = new HashMap<>();
+    Map<Integer,Integer> handles = new HashMap<>();
+    long[] now = { 0 };
+    int id = 0;
+    for ( int step = 0; step < 500000 && failures < 10; step++ )
+    {
+      if ( r.nextInt(3) == 0 && due.size() < 4900 )
+      {
+        int ticks = 1 + ( r.nextInt(10) == 0 ? r.nextInt( 2000000 ) : r.nextInt( 300 ) );
+        int h = w.schedule( ticks, 0, id );
+        check( h >= 0, "schedule gave %d", h );
+        due.put( id, now[0] + ticks );
+        handles.put( id, h );
+        id++;
+      }
+      if ( r.nextInt(5) == 0 && !handles.isEmpty() )
+      {
+        int k = handles.keySet().iterator().next();
+        check( w.cancel( handles.remove( k ) ), "cancel of timer %d failed", k );
+        due.remove( k );
+      }
+      if ( r.nextInt(50) == 0 ) { w.clear(); due.clear(); handles.clear(); now[0] = 0; }
+      now[0]++;
+      w.advance( (action, k) -> {
+        Long when = due.remove( k );
+        handles.remove( k );
+        check( when != null && when == now[0], "timer %d due %s fired on %d", k, when, now[0] );
+      } );
+      check( w.size() == due.size(), "size %d, expected %d", w.size(), due.size() );
+    }
+  }
+}
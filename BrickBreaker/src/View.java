@@ -1,20 +1,13 @@
-import javax.imageio.ImageIO;
 import javax.swing.JFrame;
-import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.Font;
-import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.Image;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Displays a graphical view of the game of breakout.
@@ -24,16 +17,17 @@ import java.util.Observer;
 public class View extends JFrame implements Observer
 { 
   private Controller controller;
-  private GameObj   bat;            // The bat
-  private GameObj   ball;           // The ball
-  private List<GameObj> bricks;     // The bricks
-  private int       score;     // The score
-  private int       frames = 0;     // Frames output
-  private int		playerLives;
-  private int		gameState;
-  private int levelNum;
   public boolean displayLevelStart;
-  private Image bgImage;
+
+  private static final int REFRESH_MS = 16; // Redraw interval ~60Hz
+
+  private final GameRenderer renderer;      // Draws the game
+  private final FrameGovernor governor;     // Of the renderer
+  private final AtomicBoolean repaintPending = new AtomicBoolean(false);
+  private FrameStats frameStats = null; // Frame times for soak tests
+  private javax.swing.Timer refresh;        // Redraws while playing
+  private int     lastState  = -1;          // Game state at the last update
+  private boolean lastPaused = false;       //  and whether it was paused
 
 
   public final int width;  // Size of screen Width
@@ -47,214 +41,58 @@ public class View extends JFrame implements Observer
   public View(int width, int height)
   {
     this.width = width; this.height = height;
+    renderer = new GameRenderer( width, height );
+    governor = renderer.getGovernor();
 
     setSize(width, height);                 // Size of window
     addKeyListener( new Transaction() );    // Called when key press
       setLocationRelativeTo(null);
     setDefaultCloseOperation(EXIT_ON_CLOSE);
     setResizable(false);
-    Timer.startTimer();
-  }
 
-  public void drawStartScreen(Graphics2D g) {
-	  try {
-    	  bgImage = ImageIO.read(new File("assets/start.png"));
-    	  g.drawImage(bgImage, 0, 0, width, height, null);
-      } catch (IOException e) {
-    	  System.out.println("Cannot draw background.");
-      }
+    // Redraw at the display rate, the model may tick slower or faster.
+    //  Only runs while the game is being played
+    refresh = new javax.swing.Timer( REFRESH_MS, e -> requestRepaint( true ) );
   }
 
-  public void drawLevelText(Graphics2D g) {
-      try {
-          String pathname = "assets/level"+ levelNum +"Text.png";
-
-          Image levelText = ImageIO.read(new File(pathname));
-
-          g.drawImage(levelText, 0, Main.H/4, Main.W, Main.H, null);
-
-      } catch (IOException e) {
-          System.out.println("Cannot draw Level text.");
-      }
-
-      repaint();
+  /**
+   * Ask for the screen to be redrawn, unless a redraw is already
+   *  queued. Only the refresh timer's gameplay frames may be skipped
+   *  by the governor, any other redraw is the last one for a while.
+   * @param timed true if asked by the refresh timer
+   */
+  private void requestRepaint( boolean timed )
+  {
+    if ( repaintPending.get() ) return;
+    if ( timed && ! governor.shouldPresent( System.nanoTime() ) ) return;
+    if ( repaintPending.compareAndSet( false, true ) ) repaint();
   }
-  
-  public void drawGameOverScreen(Graphics2D g) {
-	  try {
-    	  bgImage = ImageIO.read(new File("assets/gameOver.png"));
-    	  g.drawImage(bgImage, 0, 0, width, height, null);
-      } catch (IOException e) {
-    	  System.out.println("Cannot draw background.");
-      }
 
-	  Font font = new Font("Monospaced", Font.BOLD, 50); 
-      g.setFont( font );
-      
-      String scoreNow = Integer.toString(score);
-	  
-	  g.setPaint(Color.red);
-      g.drawString( scoreNow, width/2 + width/6 , height/2 + 50);
+  /**
+   * Redraw now, even if a redraw is queued or the governor is
+   *  holding frames back. Used when the game state or pause changes,
+   *  as the timer stops and nothing else may ask for a redraw
+   */
+  private void forceRepaint()
+  {
+    repaintPending.set( true );
+    repaint();
   }
-  
-  public void drawWinScreen(Graphics2D g) {
-
-      if (levelNum < 5){
-          try {
 
-              String pathname = "assets/level"+ levelNum +"Complete.png";
-
-              bgImage = ImageIO.read(new File(pathname));
-
-              g.drawImage(bgImage, 0, 0, width, height, null);
-
-          } catch (IOException e) {
-              System.out.println("Cannot draw level " + levelNum + " Complete screen");
-          }
-
-          Font font = new Font("Monospaced", Font.BOLD, 50);
-          g.setFont( font );
-
-          String scoreNow = Integer.toString(score);
-
-          g.setPaint(Color.red);
-          g.drawString( scoreNow, width/2 + width/6 , height/2 + 50);
-      } else {
-          try {
-              bgImage = ImageIO.read(new File("assets/gameComplete.png"));
-              g.drawImage(bgImage, 0, 0, width, height, null);
-          } catch (IOException e) {
-              System.out.println("Cannot draw background.");
-          }
-
-          Font font = new Font("Monospaced", Font.BOLD, 50);
-          g.setFont( font );
-
-          String scoreNow = Integer.toString(score);
-
-          g.setPaint(Color.red);
-          g.drawString( scoreNow, width/2 + width/6 , height/2 + 50);
-      }
-
-  }
-  
   /**
-   *  Code called to draw the current state of the game
-   *   Uses draw:       Draw a shape
-   *        fill:       Fill the shape
-   *        setPaint:   Colour used
-   *        drawString: Write string on display
+   * Draw the current state of the game, see GameRenderer
    *  @param g Graphics context to use
    */
   public void drawActualPicture( Graphics2D g )
   {
-    final int  RESET_AFTER = 200; // Movements
-    frames++;
-    synchronized( Model.class )   // Make thread safe
-    {
-    	
-      switch (gameState) {
-      case 0:
-    	  drawStartScreen(g);
-    	  break;
-      case 1:
-    	// Draw the background 
-          try {
-        	  bgImage = ImageIO.read(new File("assets/BG.png"));
-        	  g.drawImage(bgImage, 0, 0, width, height, null);
-          } catch (IOException e) {
-        	  System.out.println("Cannot draw background.");
-          }
-          
-          Font font = new Font("Monospaced", Font.BOLD, 24); 
-          g.setFont( font );
-          
-          displayBall( g, ball );   // Display the Ball
-          displayBat( g, bat  );   // Display the Bat
-
-          // *[4]****************************************************[4]*
-          // * Display the bricks that make up the game                 *
-          // * Fill in code to display bricks                           *
-          // * Remember only a visible brick is to be displayed         *
-          // ************************************************************
-          
-          for (GameObj brick : bricks)
-          {  
-        	  if (brick.isVisible())
-        	  {
-        		  displayBrick(g, brick);
-        	  }
-          }
-          
-          // Display lives
-          for(int x = 0; x < playerLives; x++) {
-
-        	  try {
-        	      Image lifeImage = ImageIO.read( new File("assets/life.png"));
-                  g.drawImage(lifeImage, Main.W - x*30 - 40, Main.H - 100, 30, 30, null);
-              } catch (IOException e) {
-                  e.printStackTrace();
-              }
-          }
-          
-          // Display state of game
-          g.setPaint(Color.red);
-          FontMetrics fm = getFontMetrics( font );
-          String fmt = "BreakOut: Score = [%6d] fps=%5.1f";
-          String text = String.format(fmt, score, frames/(Timer.timeTaken()/1000.0) );
-          
-          if ( frames > RESET_AFTER ) 
-            { frames = 0; Timer.startTimer(); }
-          g.drawString( text, width /2-fm.stringWidth(text)/2, 80 );
-
-          break;
-          
-      case 2:
-    	  drawWinScreen(g);
-    	  break;
-      case 3:
-    	  drawGameOverScreen(g);
-    	  break;
-	    }
-	  }
-      
-  }
-  
-  private void displayBat( Graphics2D g, GameObj go )
-  {
-	  Image batImage;
-	  
-	  try {
-		  batImage = ImageIO.read(new File("assets/bat.png"));
-		  g.drawImage(batImage, (int) go.getX(), (int) go.getY(), (int) go.getWidth(), (int) go.getHeight(), null);
-	  } catch (IOException e) {
-		  System.out.println("Cannot draw bat");
-	  }
-  }
-  
-  private void displayBrick(Graphics2D g, GameObj go)
-  {
-	  Image brickImg;
-	  
-	  try {
-		  brickImg = ImageIO.read(new File("assets/brick"+go.getHitCount()+".png"));  
-		  g.drawImage(brickImg, (int) go.getX(), (int) go.getY(), (int) go.getWidth(), (int) go.getHeight(), null);
-	  } catch  (IOException e) {
-			System.out.println("Cannot draw brick");
-	  }
-  }
-  
-  private void displayBall(Graphics2D g, GameObj go)
-  {
-	  Image ballImage;
-	  
-	  try {
-		  ballImage = ImageIO.read(new File("assets/ball.png"));
-		  g.drawImage(ballImage, (int) go.getX(), (int) go.getY(), (int) go.getWidth(), (int) go.getHeight(), null);
-	  } catch (IOException e) {
-		  System.out.println("Cannot draw ball");
-	  }
+    renderer.draw( g );
   }
+
+  /**
+   * The particle system drawn over the game
+   * @return The particle system
+   */
+  public ParticleSystem getParticles()  { return renderer.getParticles(); }
   
   /**
    * Called indirectly from the model when its state has changed
@@ -264,18 +102,25 @@ public class View extends JFrame implements Observer
   @Override
   public void update( Observable aModel, Object arg )
   {
-    Model model = (Model) aModel;
     // Get from the model the ball, bat, bricks & score
-    ball    = model.getBall();              // Ball
-    bricks  = model.getBricks();            // Bricks
-    bat     = model.getBat();               // Bat
-    score   = model.getScore();             // Score
-    playerLives = model.getPlayerLives();   // Player Lives
-    gameState = model.getGameState();       // Game State
-    levelNum = model.getLevelNum();
+    renderer.update( (Model) aModel );
+
+    // Only redraw on a timer while there is movement to show
+    int     state  = renderer.getGameState();
+    boolean paused = renderer.isPaused();
+    boolean moving = state == 1 && !paused;
+    if ( moving != refresh.isRunning() )
+    {
+      if ( moving ) refresh.start(); else refresh.stop();
+    }
     
     //Debug.trace("Update");
-    repaint();                              // Re draw game
+    if ( state != lastState || paused != lastPaused )
+    {
+      lastState = state; lastPaused = paused;
+      forceRepaint();                       // Show the new screen
+    } else if ( !moving )
+      requestRepaint( false );              // Re draw game, the timer does while moving
   }
 
   /**
@@ -307,15 +152,49 @@ public class View extends JFrame implements Observer
    */
   private void drawPicture( Graphics2D g )   // Double buffer
   {                                          //  to avoid flicker
-    if ( bricks == null ) return;            // Race condition
+    repaintPending.set( false );             // Next request may repaint
+    if ( ! renderer.isReady() ) return;     // Race condition
     if (  theAG == null )
     {
       Dimension d = getSize();              // Size of curr. image
       theAI = (BufferedImage) createImage( d.width, d.height );
       theAG = theAI.createGraphics();
     }
+    long start = System.nanoTime();
     drawActualPicture( theAG );             // Draw Actual Picture
     g.drawImage( theAI, 0, 0, this );       //  Display on screen
+    long end = System.nanoTime();
+    governor.frameDrawn( end - start, end ); // How long did it take
+    if ( frameStats != null ) frameStats.record( end - start );
+  }
+
+  /**
+   * Told about game events, in the HUD consumer thread.
+   *  Anything that changes the score or lives means the
+   *  HUD text must be rebuilt on the next frame
+   */
+  public void onGameEvent( int type, float x, float y, int value )
+  {
+    renderer.onGameEvent( type, x, y, value );
+  }
+
+  /**
+   * Show the best scores on the result screens
+   * @param store The high score store, null for none
+   */
+  public void setHighScores( HighScoreStore store )
+  {
+    renderer.setHighScores( store );
+    if ( store != null ) store.setOnChange( this::repaint );
+  }
+
+  /**
+   * Record the time taken by every frame drawn
+   * @param stats Where to record frame times, null for none
+   */
+  public void setFrameStats( FrameStats stats )
+  {
+    frameStats = stats;
   }
 
   /**
@@ -337,7 +216,8 @@ public class View extends JFrame implements Observer
     public void keyPressed(KeyEvent e)      // Obey this method
     {
       // Make -ve so not confused with normal characters
-      controller.userKeyInteraction( -e.getKeyCode() );
+      if ( controller != null )             // None when spectating
+        controller.userKeyInteraction( -e.getKeyCode() );
     }
 
     @Override
@@ -350,7 +230,8 @@ public class View extends JFrame implements Observer
     public void keyTyped(KeyEvent e)
     {
       // Send internal code for key
-      controller.userKeyInteraction( e.getKeyChar() );
+      if ( controller != null )
+        controller.userKeyInteraction( e.getKeyChar() );
     }
   }
 }
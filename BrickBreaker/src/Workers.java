@@ -0,0 +1,48 @@
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small shared pool for short jobs off the game and Swing threads,
+ *  such as starting sounds and loading assets.
+ * At most THREADS threads exist, and they end when idle, so the
+ *  number of threads does not grow however many jobs are given.
+ */
+public final class Workers
+{
+  private static final int THREADS = 2;
+  private static final AtomicInteger count = new AtomicInteger();
+  private static final ThreadPoolExecutor pool =
+    new ThreadPoolExecutor( THREADS, THREADS, 5, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(),
+                            r -> {
+                              Thread t = new Thread( r, "Worker-" + count.incrementAndGet() );
+                              t.setDaemon(true);
+                              return t;
+                            } );
+  static
+  {
+    pool.allowCoreThreadTimeOut( true );     // No threads when idle
+  }
+
+  private Workers() {}
+
+  /**
+   * Run a job in the pool, errors are reported not thrown
+   * @param name What the job does, for error messages
+   * @param job  The job
+   */
+  public static void run( String name, Runnable job )
+  {
+    pool.execute( () -> {
+      try
+      {
+        job.run();
+      } catch (RuntimeException e)
+      {
+        Debug.error("Workers - %s failed\n%s", name, e.getMessage() );
+      }
+    } );
+  }
+}